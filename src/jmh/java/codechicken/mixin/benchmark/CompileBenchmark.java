@@ -0,0 +1,149 @@
+package codechicken.mixin.benchmark;
+
+import codechicken.mixin.MixinFactoryImpl;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.benchmark.fixture.BenchBase;
+import codechicken.mixin.benchmark.fixture.BenchFactory;
+import codechicken.mixin.benchmark.fixture.TraitFixtures;
+import net.covers1624.quack.collection.FastStream;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks generation of composite classes, at several trait counts.
+ * <p>
+ * Generation does not define the class, so a benchmark run doesn't fill metaspace.
+ * Run with {@code -prof gc} to see allocation per compile. Time per trait should stay roughly
+ * flat as the trait count grows, anything super-linear shows up at the larger counts.
+ * <p>
+ * {@link #generateMixinClass} measures a warm compiler, the super class template and trait
+ * fragments are already cached, as they are for every composite after the first.
+ * {@link #generateMixinClassCold} measures the first composite on a fresh compiler.
+ * <p>
+ * {@link #generateSuperset} and {@link #generateWithoutFragments} compare a composite whose traits,
+ * all but the last, were already part of an earlier composite, to one whose traits weren't.
+ * The difference is what reusing trait fragments saves. Method bodies are emitted for every
+ * composite either way.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class CompileBenchmark {
+
+    @Param ({ "1", "8", "32", "128", "512" })
+    public int traits;
+
+    private MixinCompiler compiler;
+    private Set<String> traitNames;
+
+    @Setup
+    public void setup() {
+        compiler = MixinCompiler.create();
+        MixinFactoryImpl<BenchBase, BenchFactory> factory = new MixinFactoryImpl<>(compiler, BenchBase.class, BenchFactory.class, "compile");
+        List<ClassNode> nodes = TraitFixtures.generateTraits("Compile", traits);
+        traitNames = FastStream.of(nodes)
+                .map(factory::registerTrait)
+                .map(TraitKey::tName)
+                .toImmutableSet();
+    }
+
+    @Benchmark
+    public byte[] generateMixinClass() {
+        return compiler.generateMixinClass("codechicken/mixin/benchmark/Generated", TraitFixtures.BASE, traitNames);
+    }
+
+    @Benchmark
+    public byte[] generateMixinClassCold(ColdState state) {
+        return state.compiler.generateMixinClass("codechicken/mixin/benchmark/Generated", TraitFixtures.BASE, state.traitNames);
+    }
+
+    @Benchmark
+    public byte[] generateSuperset(SupersetState state) {
+        return state.compiler.generateMixinClass("codechicken/mixin/benchmark/Generated", TraitFixtures.BASE, state.traitNames);
+    }
+
+    @Benchmark
+    public byte[] generateWithoutFragments(WithoutFragmentsState state) {
+        return state.compiler.generateMixinClass("codechicken/mixin/benchmark/Generated", TraitFixtures.BASE, state.traitNames);
+    }
+
+    /**
+     * Registers the benchmark's traits, and one extra trait, returning their names in order.
+     */
+    private static List<String> register(MixinCompiler compiler, int traits) {
+        MixinFactoryImpl<BenchBase, BenchFactory> factory = new MixinFactoryImpl<>(compiler, BenchBase.class, BenchFactory.class, "compile");
+        return FastStream.of(TraitFixtures.generateTraits("Compile", traits + 1))
+                .map(factory::registerTrait)
+                .map(TraitKey::tName)
+                .toList();
+    }
+
+    /**
+     * Every trait but the last was already compiled into a composite, for every invocation.
+     */
+    @State (Scope.Thread)
+    public static class SupersetState {
+
+        private MixinCompiler compiler;
+        private Set<String> traitNames;
+
+        @Setup (Level.Invocation)
+        public void setup(CompileBenchmark bench) {
+            compiler = MixinCompiler.create();
+            List<String> names = register(compiler, bench.traits);
+            List<String> subset = bench.traits > 1 ? names.subList(0, bench.traits - 1) : names.subList(bench.traits, bench.traits + 1);
+            compiler.generateMixinClass("codechicken/mixin/benchmark/Subset", TraitFixtures.BASE, new LinkedHashSet<>(subset));
+            traitNames = new LinkedHashSet<>(names.subList(0, bench.traits));
+        }
+    }
+
+    /**
+     * Only an unrelated trait was compiled into a composite, for every invocation.
+     */
+    @State (Scope.Thread)
+    public static class WithoutFragmentsState {
+
+        private MixinCompiler compiler;
+        private Set<String> traitNames;
+
+        @Setup (Level.Invocation)
+        public void setup(CompileBenchmark bench) {
+            compiler = MixinCompiler.create();
+            List<String> names = register(compiler, bench.traits);
+            compiler.generateMixinClass("codechicken/mixin/benchmark/Unrelated", TraitFixtures.BASE, Set.of(names.get(bench.traits)));
+            traitNames = new LinkedHashSet<>(names.subList(0, bench.traits));
+        }
+    }
+
+    /**
+     * A fresh compiler with the traits registered, for every invocation.
+     * <p>
+     * Setup is not measured, but at low trait counts the per invocation timestamps
+     * are a noticeable part of the result.
+     */
+    @State (Scope.Thread)
+    public static class ColdState {
+
+        private MixinCompiler compiler;
+        private Set<String> traitNames;
+
+        @Setup (Level.Invocation)
+        public void setup(CompileBenchmark bench) {
+            compiler = MixinCompiler.create();
+            MixinFactoryImpl<BenchBase, BenchFactory> factory = new MixinFactoryImpl<>(compiler, BenchBase.class, BenchFactory.class, "compile");
+            traitNames = FastStream.of(TraitFixtures.generateTraits("Compile", bench.traits))
+                    .map(factory::registerTrait)
+                    .map(TraitKey::tName)
+                    .toImmutableSet();
+        }
+    }
+}
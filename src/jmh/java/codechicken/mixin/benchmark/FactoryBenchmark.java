@@ -0,0 +1,78 @@
+package codechicken.mixin.benchmark;
+
+import codechicken.mixin.MixinFactoryImpl;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.benchmark.fixture.BenchBase;
+import codechicken.mixin.benchmark.fixture.BenchFactory;
+import codechicken.mixin.benchmark.fixture.TraitFixtures;
+import codechicken.mixin.util.FactoryGenerator;
+import com.google.common.collect.ImmutableSet;
+import net.covers1624.quack.collection.FastStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link MixinFactoryImpl} hot paths, cached {@link MixinFactoryImpl#construct}
+ * calls and invoking a generated factory compared to a plain {@code new}.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class FactoryBenchmark {
+
+    @Param ({ "1", "8", "32", "128" })
+    public int traits;
+
+    @Param ({ "CLASS", "HIDDEN_CLASS" })
+    public FactoryGenerator.Strategy strategy;
+
+    private MixinCompiler compiler;
+    private FactoryGenerator generator;
+    private ImmutableSet<TraitKey> traitKeys;
+    private MixinFactoryImpl<BenchBase, BenchFactory> factory;
+    private BenchFactory benchFactory;
+    private Class<? extends BenchBase> compiled;
+
+    @Setup
+    public void setup() {
+        compiler = MixinCompiler.create();
+        factory = new MixinFactoryImpl<>(compiler, BenchBase.class, BenchFactory.class, "factory");
+        traitKeys = FastStream.of(TraitFixtures.generateTraits("Factory", traits))
+                .map(factory::registerTrait)
+                .toImmutableSet();
+        compiled = factory.construct(traitKeys).create().getClass();
+        generator = new FactoryGenerator(compiler);
+        generator.setStrategy(strategy);
+        benchFactory = generator.generateFactory(compiled, BenchFactory.class);
+    }
+
+    @Benchmark
+    public BenchFactory constructCached() {
+        return factory.construct(traitKeys);
+    }
+
+    @Benchmark
+    public BenchBase invokeFactory() {
+        return benchFactory.create();
+    }
+
+    @Benchmark
+    public BenchBase plainNew() {
+        return new BenchBase();
+    }
+
+    /**
+     * Note, this defines a new class every invocation.
+     */
+    @Benchmark
+    @Measurement (iterations = 5, time = 1, batchSize = 1000)
+    @BenchmarkMode (Mode.SingleShotTime)
+    public BenchFactory generateFactory() {
+        return generator.generateFactory(compiled, BenchFactory.class);
+    }
+}
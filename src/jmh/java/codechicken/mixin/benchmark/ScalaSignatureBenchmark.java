@@ -0,0 +1,62 @@
+package codechicken.mixin.benchmark;
+
+import codechicken.mixin.benchmark.fixture.ScalaSignatureFixtures;
+import codechicken.mixin.scala.ScalaSignature;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing and querying a {@link ScalaSignature}, the same way
+ * {@link codechicken.mixin.scala.MixinScalaLanguageSupport} does when building a trait.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class ScalaSignatureBenchmark {
+
+    private static final String NAME = "codechicken.mixin.benchmark.ScalaTrait";
+
+    @Param ({ "1", "8", "32", "128" })
+    public int methods;
+
+    private String signature;
+    private ScalaSignature parsed;
+
+    @Setup
+    public void setup() {
+        signature = ScalaSignatureFixtures.generateSignature("ScalaTrait", methods);
+        parsed = new ScalaSignature(signature);
+        if (parsed.findClass(NAME) == null) {
+            throw new IllegalStateException("Broken signature fixture.");
+        }
+    }
+
+    @Benchmark
+    public ScalaSignature parse() {
+        return new ScalaSignature(signature);
+    }
+
+    @Benchmark
+    public void parseAndQuery(Blackhole bh) {
+        query(new ScalaSignature(signature), bh);
+    }
+
+    @Benchmark
+    public void query(Blackhole bh) {
+        query(parsed, bh);
+    }
+
+    private static void query(ScalaSignature sig, Blackhole bh) {
+        ScalaSignature.ClassSymbolRef cSym = sig.findClass(NAME);
+        bh.consume(cSym.jParent());
+        for (ScalaSignature.MethodSymbol sym : sig.<ScalaSignature.MethodSymbol>collect(8)) {
+            if (sym.isParam() || !sym.owner().equals(cSym)) continue;
+            bh.consume(sym.jDesc());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package codechicken.mixin.benchmark;
+
+import codechicken.mixin.SidedFactory;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.benchmark.fixture.*;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SidedFactory#getTraitsForObject}, for cached lookups and the
+ * class hierarchy walk performed on a cache miss.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class SidedFactoryBenchmark {
+
+    private BenchSidedFactory factory;
+    private Object part;
+
+    @Setup
+    public void setup() {
+        factory = new BenchSidedFactory(MixinCompiler.create());
+        factory.registerTrait(SidedFixtures.MarkerA.class, MarkerTraitA.class);
+        factory.registerTrait(SidedFixtures.MarkerB.class, MarkerTraitB.class);
+        factory.registerTrait(SidedFixtures.MarkerC.class, MarkerTraitC.class, null);
+        part = new SidedFixtures.Part();
+        factory.getTraitsForObject(part, true);
+        factory.getTraitsForObject(part, false);
+    }
+
+    @Benchmark
+    public ImmutableSet<?> cachedClient() {
+        return factory.getTraitsForObject(part, true);
+    }
+
+    @Benchmark
+    @Threads (4)
+    public void cachedBothSides(Blackhole bh) {
+        bh.consume(factory.getTraitsForObject(part, true));
+        bh.consume(factory.getTraitsForObject(part, false));
+    }
+
+    @Benchmark
+    public void hierarchyWalk(Blackhole bh) {
+        factory.walk(SidedFixtures.Part.class, bh);
+    }
+
+    public static class BenchSidedFactory extends SidedFactory<BenchBase, BenchFactory, Object> {
+
+        public BenchSidedFactory(MixinCompiler mc) {
+            super(mc, BenchBase.class, BenchFactory.class, "sided");
+        }
+
+        public void walk(Class<?> clazz, Blackhole bh) {
+            for (Class<?> c : hierarchy(clazz)) {
+                bh.consume(c);
+            }
+        }
+    }
+}
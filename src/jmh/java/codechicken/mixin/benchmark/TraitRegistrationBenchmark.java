@@ -0,0 +1,71 @@
+package codechicken.mixin.benchmark;
+
+import codechicken.mixin.MixinFactoryImpl;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.benchmark.fixture.BenchBase;
+import codechicken.mixin.benchmark.fixture.BenchFactory;
+import codechicken.mixin.benchmark.fixture.TraitFixtures;
+import codechicken.mixin.util.JavaTraitGenerator;
+import codechicken.mixin.util.MixinInfo;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks trait registration.
+ * <p>
+ * {@link #registerTraits} registers every trait against a fresh {@link MixinCompiler}
+ * each iteration, as traits are only ever registered once. {@link #javaTraitGenerator}
+ * measures just the trait transformation, without defining any classes.
+ */
+@State (Scope.Benchmark)
+@Fork (1)
+public class TraitRegistrationBenchmark {
+
+    @Param ({ "1", "8", "32", "128" })
+    public int traits;
+
+    private MixinFactoryImpl<BenchBase, BenchFactory> factory;
+    private List<ClassNode> nodes;
+    private ClassNode single;
+    private MixinCompiler generatorCompiler;
+
+    @Setup (Level.Trial)
+    public void setupTrial() {
+        single = TraitFixtures.generateTrait("codechicken/mixin/benchmark/generated/SingleTrait", 0);
+        generatorCompiler = MixinCompiler.create();
+        // The generator resolves the trait's ClassInfo from the compiler.
+        generatorCompiler.getClassInfo(single);
+    }
+
+    @Setup (Level.Iteration)
+    public void setupIteration() {
+        factory = new MixinFactoryImpl<>(MixinCompiler.create(), BenchBase.class, BenchFactory.class, "register");
+        nodes = TraitFixtures.generateTraits("Register", traits);
+    }
+
+    @Benchmark
+    @BenchmarkMode (Mode.SingleShotTime)
+    @OutputTimeUnit (TimeUnit.MILLISECONDS)
+    @Warmup (iterations = 10)
+    @Measurement (iterations = 20)
+    public void registerTraits(Blackhole bh) {
+        for (ClassNode node : nodes) {
+            TraitKey key = factory.registerTrait(node);
+            bh.consume(key);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode (Mode.AverageTime)
+    @OutputTimeUnit (TimeUnit.MICROSECONDS)
+    @Warmup (iterations = 5, time = 1)
+    @Measurement (iterations = 5, time = 1)
+    public MixinInfo javaTraitGenerator() {
+        return new JavaTraitGenerator(generatorCompiler, single).getMixinInfo();
+    }
+}
@@ -0,0 +1,17 @@
+package codechicken.mixin.benchmark.fixture;
+
+/**
+ * The base class all benchmark traits are mixed onto.
+ */
+public class BenchBase {
+
+    public int ticks;
+
+    public void tick() {
+        ticks++;
+    }
+
+    public int value() {
+        return 1;
+    }
+}
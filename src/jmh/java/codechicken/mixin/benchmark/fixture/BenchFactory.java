@@ -0,0 +1,6 @@
+package codechicken.mixin.benchmark.fixture;
+
+public interface BenchFactory {
+
+    BenchBase create();
+}
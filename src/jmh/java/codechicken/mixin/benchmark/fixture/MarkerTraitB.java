@@ -0,0 +1,15 @@
+package codechicken.mixin.benchmark.fixture;
+
+/**
+ * A trait registered against {@link SidedFixtures.MarkerB}.
+ */
+public class MarkerTraitB extends BenchBase {
+
+    private int count;
+
+    @Override
+    public void tick() {
+        super.tick();
+        count++;
+    }
+}
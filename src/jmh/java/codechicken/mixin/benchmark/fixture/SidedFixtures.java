@@ -0,0 +1,21 @@
+package codechicken.mixin.benchmark.fixture;
+
+/**
+ * Marker interfaces and a small class hierarchy for benchmarking {@link codechicken.mixin.SidedFactory}.
+ */
+public class SidedFixtures {
+
+    public interface MarkerA { }
+
+    public interface MarkerB { }
+
+    public interface MarkerC extends MarkerA { }
+
+    public interface Unmarked extends MarkerB { }
+
+    public static class PartBase implements MarkerA { }
+
+    public static class PartMid extends PartBase implements MarkerB, Unmarked { }
+
+    public static class Part extends PartMid implements MarkerC, Unmarked { }
+}
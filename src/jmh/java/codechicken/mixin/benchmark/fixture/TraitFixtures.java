@@ -0,0 +1,88 @@
+package codechicken.mixin.benchmark.fixture;
+
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.util.Utils;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates synthetic java traits on top of {@link BenchBase}.
+ * <p>
+ * Each trait has a private field, chains {@link BenchBase#tick()} and {@link BenchBase#value()}
+ * through their super calls, and adds a unique getter. This exercises field accessors,
+ * super bridges and static bridges in the composite class.
+ */
+public class TraitFixtures {
+
+    public static final String BASE = Utils.asmName(BenchBase.class);
+    private static final String PACKAGE = "codechicken/mixin/benchmark/generated/";
+
+    /**
+     * Generates {@code count} trait ClassNodes.
+     *
+     * @param prefix A prefix for the trait names, traits must be unique per {@link MixinCompiler}.
+     * @param count  The number of traits.
+     * @return The traits.
+     */
+    public static List<ClassNode> generateTraits(String prefix, int count) {
+        List<ClassNode> traits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            traits.add(generateTrait(PACKAGE + prefix + "Trait" + i, i));
+        }
+        return traits;
+    }
+
+    public static ClassNode generateTrait(String name, int index) {
+        ClassNode cNode = new ClassNode();
+        cNode.visit(V1_8, ACC_PUBLIC | ACC_SUPER, name, null, BASE, null);
+        cNode.visitField(ACC_PRIVATE, "field", "I", null, null);
+
+        MethodVisitor mv = cNode.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+
+        mv = cNode.visitMethod(ACC_PUBLIC, "tick", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, BASE, "tick", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(DUP);
+        mv.visitFieldInsn(GETFIELD, name, "field", "I");
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitFieldInsn(PUTFIELD, name, "field", "I");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(3, 1);
+        mv.visitEnd();
+
+        mv = cNode.visitMethod(ACC_PUBLIC, "value", "()I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, BASE, "value", "()I", false);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(2, 1);
+        mv.visitEnd();
+
+        mv = cNode.visitMethod(ACC_PUBLIC, "get" + index, "()I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, "field", "I");
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+
+        cNode.visitEnd();
+        return cNode;
+    }
+}
@@ -5,28 +5,42 @@ import codechicken.mixin.api.MixinBackend;
 import codechicken.mixin.api.MixinCompiler;
 import codechicken.mixin.api.MixinDebugger;
 import codechicken.mixin.api.MixinLanguageSupport;
+import codechicken.mixin.api.MixinMetrics;
+import codechicken.mixin.api.MixinMetrics.Counter;
+import codechicken.mixin.api.MixinMetrics.Timer;
 import codechicken.mixin.util.*;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Lists;
-import net.covers1624.quack.collection.ColUtils;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.util.SneakyUtils;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
 
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
-import static org.objectweb.asm.ClassReader.EXPAND_FRAMES;
-import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
-import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.ClassReader.*;
 import static org.objectweb.asm.Opcodes.*;
 
 /**
@@ -37,6 +51,36 @@ import static org.objectweb.asm.Opcodes.*;
 public class MixinCompilerImpl implements MixinCompiler {
 
     public static final Level LOG_LEVEL = Level.valueOf(System.getProperty("codechicken.mixin.log_level", "DEBUG"));
+    /**
+     * The folder for the {@link MixinClassCache}, if unset the cache is disabled.
+     */
+    public static final @Nullable String CLASS_CACHE_DIR = System.getProperty("codechicken.mixin.class_cache");
+    /**
+     * The version of the class generator, this is part of every {@link MixinClassCache} key.
+     * Must be bumped whenever the output of {@link #generateMixinClass} changes.
+     */
+    public static final int GENERATOR_VERSION = 2;
+    /**
+     * If generated composite classes and factories should be checked with {@link Utils#verifyClass}.
+     * These are written with explicit maxs and no frames, this is intended for tests.
+     */
+    public static final boolean VERIFY_GENERATED = Boolean.getBoolean("codechicken.mixin.verify");
+    /**
+     * The maximum weight in bytes of the class bytes cache. Bytes of registered traits are not counted.
+     * Classes the {@link MixinBackend} could not find are not cached, they are looked up again every time.
+     */
+    public static final long CLASS_BYTES_CACHE_SIZE = Long.getLong("codechicken.mixin.class_bytes_cache_size", 16 * 1024 * 1024);
+    /**
+     * The maximum number of structural {@link ClassNode}s to cache.
+     */
+    public static final int CLASS_NODE_CACHE_SIZE = Integer.getInteger("codechicken.mixin.class_node_cache_size", 1024);
+    /**
+     * If registered traits should be compacted, releasing their class bytes and structural node once
+     * registered. Traits registered by {@link MixinFactoryImpl#registerTrait(Class)} also get a code-free
+     * {@link ClassInfo}, resolved by name, so the ClassNode parsed to register them is not retained.
+     * See {@link #getTraitFootprints()}.
+     */
+    public static final boolean COMPACT_TRAITS = Boolean.parseBoolean(System.getProperty("codechicken.mixin.compact_traits", "true"));
     private static final Logger LOGGER = LoggerFactory.getLogger(MixinCompilerImpl.class);
 
     private final MixinBackend mixinBackend;
@@ -44,10 +88,26 @@ public class MixinCompilerImpl implements MixinCompiler {
     private final List<MixinLanguageSupport> languageSupportList;
     private final Map<String, MixinLanguageSupport> languageSupportMap;
 
-    private final Map<String, byte[]> classBytesCache = Collections.synchronizedMap(new HashMap<>());
-    private final Map<String, ClassInfo> infoCache = Collections.synchronizedMap(new HashMap<>());
-    private final Map<String, MixinInfo> mixinMap = Collections.synchronizedMap(new HashMap<>());
-    private final MixinClassLoader classLoader;
+    private final Cache<String, byte[]> classBytesCache;
+    private final Map<String, byte[]> pinnedClassBytes = new ConcurrentHashMap<>();
+    private final Cache<String, ClassNode> structuralNodeCache;
+    private final Map<String, ClassInfo> infoCache = new ConcurrentHashMap<>();
+    private final Map<String, InFlight<ClassInfo>> inFlightInfos = new ConcurrentHashMap<>();
+    private final Map<String, MixinInfo> mixinMap = new ConcurrentHashMap<>();
+    private final Map<String, InFlight<MixinInfo>> inFlightTraits = new ConcurrentHashMap<>();
+    private final Map<String, HashCode> classDigests = Collections.synchronizedMap(new HashMap<>());
+    // Digests of each trait's ClassNode as it was registered, only computed whilst a MixinClassCache is set.
+    private final Map<String, HashCode> traitDigests = new ConcurrentHashMap<>();
+    private final Map<String, BaseTemplate> baseTemplates = new ConcurrentHashMap<>();
+    private final Map<String, TraitFragment> traitFragments = new ConcurrentHashMap<>();
+    private final Map<String, TraitFootprint> traitFootprints = new ConcurrentHashMap<>();
+    private volatile MixinClassLoader classLoader;
+    // Held for reading by anything which registers, compiles or defines, for writing by retireGeneration.
+    private final ReentrantReadWriteLock generationLock = new ReentrantReadWriteLock();
+    private final Set<MixinFactoryImpl<?, ?>> factories = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private @Nullable MixinClassCache mixinClassCache = CLASS_CACHE_DIR != null ? new MixinClassCache(Path.of(CLASS_CACHE_DIR)) : null;
+    private MixinMetrics metrics = MixinMetrics.NullMetrics.INSTANCE;
 
     public MixinCompilerImpl() {
         this(new MixinBackend.SimpleMixinBackend());
@@ -87,7 +147,16 @@ public class MixinCompilerImpl implements MixinCompiler {
         long end = System.nanoTime();
         LOGGER.atLevel(LOG_LEVEL).log("Loaded {} MixinLanguageSupport instances in {}.", languageSupportList.size(), Utils.timeString(start, end));
 
-        classLoader = new MixinClassLoader(mixinBackend);
+        classBytesCache = CacheBuilder.newBuilder()
+                .maximumWeight(CLASS_BYTES_CACHE_SIZE)
+                .<String, byte[]>weigher((k, v) -> v.length + k.length())
+                .recordStats()
+                .build();
+        structuralNodeCache = CacheBuilder.newBuilder()
+                .maximumSize(CLASS_NODE_CACHE_SIZE)
+                .build();
+
+        classLoader = new MixinClassLoader(mixinBackend, 0);
     }
 
     @Override
@@ -95,6 +164,134 @@ public class MixinCompilerImpl implements MixinCompiler {
         return mixinBackend;
     }
 
+    @Override
+    public MixinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link MixinMetrics} to record compiler and factory metrics to.
+     *
+     * @param metrics The metrics.
+     */
+    public void setMetrics(MixinMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getGeneration() {
+        return classLoader.generation;
+    }
+
+    /**
+     * Retires the current generation, starting a new one with a fresh class loader.
+     * <p>
+     * All registered traits, and every class defined so far, are dropped. Traits must be
+     * registered again before use. Once nothing references the old classes or their instances,
+     * the old class loader and its classes can be unloaded.
+     * <p>
+     * Compiler caches are also cleared, so traits changed since they were registered are
+     * read again. Any trait registrations or compiles in progress are finished first, and
+     * every {@link MixinFactoryImpl} using this compiler drops its caches before this returns.
+     *
+     * @return The new generation.
+     * @throws IllegalStateException If called from within {@link #withGeneration}.
+     */
+    public int retireGeneration() {
+        if (isInGeneration()) {
+            throw new IllegalStateException("Can't retire a generation whilst registering or compiling in it.");
+        }
+        MixinClassLoader retired;
+        generationLock.writeLock().lock();
+        try {
+            retired = classLoader;
+            mixinMap.clear();
+            traitFragments.clear();
+            baseTemplates.clear();
+            infoCache.clear();
+            classDigests.clear();
+            traitDigests.clear();
+            traitFootprints.clear();
+            pinnedClassBytes.clear();
+            classBytesCache.invalidateAll();
+            structuralNodeCache.invalidateAll();
+            classLoader = new MixinClassLoader(mixinBackend, retired.generation + 1);
+        } finally {
+            generationLock.writeLock().unlock();
+        }
+        // Idle factories would otherwise keep the retired classes reachable until they are next used.
+        List<MixinFactoryImpl<?, ?>> toClear;
+        synchronized (factories) {
+            toClear = new ArrayList<>(factories);
+        }
+        for (MixinFactoryImpl<?, ?> factory : toClear) {
+            factory.checkGeneration();
+        }
+        LOGGER.atLevel(LOG_LEVEL).log("Retired MixinCompiler generation {}.", retired.generation);
+        return retired.generation + 1;
+    }
+
+    @Override
+    public <T> T withGeneration(Supplier<T> action) {
+        generationLock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            generationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return If the calling thread is within {@link #withGeneration}.
+     */
+    boolean isInGeneration() {
+        return generationLock.getReadHoldCount() > 0;
+    }
+
+    /**
+     * Tracks a factory, so it can be cleared when a generation is retired.
+     * Factories are only weakly referenced.
+     */
+    void trackFactory(MixinFactoryImpl<?, ?> factory) {
+        factories.add(factory);
+    }
+
+    /**
+     * Sets the {@link MixinClassCache} used to skip generation of previously compiled classes.
+     * <p>
+     * Traits are hashed as they are registered whilst a cache is set. Composites of traits
+     * registered before then are never cached.
+     *
+     * @param mixinClassCache The cache, {@code null} to disable.
+     */
+    public void setMixinClassCache(@Nullable MixinClassCache mixinClassCache) {
+        this.mixinClassCache = mixinClassCache;
+    }
+
+    public @Nullable MixinClassCache getMixinClassCache() {
+        return mixinClassCache;
+    }
+
+    /**
+     * Gets the hit, miss and eviction statistics of the class bytes cache.
+     *
+     * @return The stats.
+     */
+    public CacheStats getClassBytesCacheStats() {
+        return classBytesCache.stats();
+    }
+
+    /**
+     * Gets what was released by compacting each registered trait, as recorded when it was compacted.
+     * <p>
+     * Empty unless {@link #COMPACT_TRAITS} is enabled.
+     *
+     * @return The footprints, keyed by trait name.
+     */
+    public Map<String, TraitFootprint> getTraitFootprints() {
+        return Collections.unmodifiableMap(traitFootprints);
+    }
+
     @Override
     public <T extends MixinLanguageSupport> @Nullable T getLanguageSupport(String name) {
         return SneakyUtils.unsafeCast(languageSupportMap.get(name));
@@ -102,23 +299,64 @@ public class MixinCompilerImpl implements MixinCompiler {
 
     @Override
     public @Nullable ClassInfo getClassInfo(String name) {
-        // Do not compress this down to a computeIfAbsent, obtainInfo can modify the infoCache map.
-        ClassInfo info = infoCache.get(name);
-        if (info == null) {
-            info = obtainInfo(name);
-            infoCache.put(name, info);
-        }
-        return info;
+        return resolveInfo(name, () -> obtainInfo(name));
     }
 
     @Override
     public @Nullable ClassInfo getClassInfo(ClassNode cNode) {
-        ClassInfo info = infoCache.get(cNode.name);
-        if (info == null) {
-            info = obtainInfo(cNode);
-            infoCache.put(cNode.name, info);
+        return resolveInfo(cNode.name, () -> obtainInfo(cNode));
+    }
+
+    /**
+     * Resolves a {@link ClassInfo}, building it at most once per class.
+     * <p>
+     * This can't be a computeIfAbsent, building a ClassInfo resolves other ClassInfos.
+     * Instead, each in-flight resolution is tracked with the thread building it. Other threads
+     * wait for its result, and recursive resolution on the owning thread builds directly.
+     * Classes which could not be found are not cached.
+     */
+    private @Nullable ClassInfo resolveInfo(String name, Supplier<@Nullable ClassInfo> func) {
+        ClassInfo info = infoCache.get(name);
+        if (info != null) {
+            metrics.increment(Counter.INFO_CACHE_HIT);
+            return info;
+        }
+        // Taken before claiming, so a waiting retire can never block the owner of a claim.
+        return withGeneration(() -> resolveInfoLocked(name, func));
+    }
+
+    private @Nullable ClassInfo resolveInfoLocked(String name, Supplier<@Nullable ClassInfo> func) {
+        InFlight<ClassInfo> ours = new InFlight<>(Thread.currentThread(), new CompletableFuture<>());
+        InFlight<ClassInfo> existing = inFlightInfos.putIfAbsent(name, ours);
+        if (existing != null) {
+            if (existing.owner == Thread.currentThread()) {
+                metrics.increment(Counter.INFO_CACHE_MISS);
+                return func.get();
+            }
+            metrics.increment(Counter.INFO_CACHE_HIT);
+            return existing.join();
+        }
+
+        try {
+            // Another thread may have finished between our cache check and claiming the class.
+            ClassInfo info = infoCache.get(name);
+            if (info == null) {
+                metrics.increment(Counter.INFO_CACHE_MISS);
+                info = func.get();
+                if (info != null) {
+                    infoCache.put(name, info);
+                }
+            } else {
+                metrics.increment(Counter.INFO_CACHE_HIT);
+            }
+            ours.future.complete(info);
+            return info;
+        } catch (Throwable ex) {
+            ours.future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightInfos.remove(name, ours);
         }
-        return info;
     }
 
     @Override
@@ -126,141 +364,283 @@ public class MixinCompilerImpl implements MixinCompiler {
         return mixinMap.get(name);
     }
 
+    private MixinInfo getRegisteredTrait(String name) {
+        MixinInfo info = mixinMap.get(name);
+        if (info == null) throw new IllegalStateException("Trait " + name + " is not registered");
+        return info;
+    }
+
     @Override
     @SuppressWarnings ("unchecked")
     public <T> Class<T> compileMixinClass(String name, String superClass, Set<String> traits) {
-        ClassInfo baseInfo = getClassInfo(superClass);
-        if (baseInfo == null) throw new IllegalArgumentException("Provided super class does not exist.");
         if (traits.isEmpty()) {
+            ClassInfo baseInfo = getClassInfo(superClass);
+            if (baseInfo == null) throw new IllegalArgumentException("Provided super class does not exist.");
             try {
                 return (Class<T>) Class.forName(baseInfo.getName().replace('/', '.'), true, mixinBackend.getContextClassLoader());
             } catch (ClassNotFoundException ex) {
                 throw new RuntimeException("Base class can't be loaded??", ex);
             }
         }
+        return withGeneration(() -> defineClass(name, generateMixinClass(name, superClass, traits)));
+    }
+
+    @Override
+    public byte[] generateMixinClass(String name, String superClass, Set<String> traits) {
+        return withGeneration(() -> generateMixinClassLocked(name, superClass, traits));
+    }
+
+    private byte[] generateMixinClassLocked(String name, String superClass, Set<String> traits) {
+        BaseTemplate base = baseTemplates.computeIfAbsent(superClass, this::buildBaseTemplate);
+        if (traits.isEmpty()) throw new IllegalArgumentException("Expected at least one trait.");
 
         long start = System.nanoTime();
         List<MixinInfo> baseTraits = FastStream.of(traits)
-                .map(mixinMap::get)
+                .map(this::getRegisteredTrait)
                 .toList();
-        List<MixinInfo> mixinInfos = FastStream.of(baseTraits)
-                .flatMap(MixinInfo::linearize)
+        List<TraitFragment> fragments = FastStream.of(baseTraits)
+                .flatMap(e -> traitFragment(e).linearized)
                 .distinct()
+                .map(this::traitFragment)
+                .toList();
+        List<MixinInfo> mixinInfos = FastStream.of(fragments)
+                .map(e -> e.info)
                 .toList();
         List<ClassInfo> traitInfos = FastStream.of(mixinInfos)
                 .map(MixinInfo::name)
                 .map(this::getClassInfo)
                 .toList();
-        ClassNode cNode = new ClassNode();
 
-        cNode.visit(V1_8, ACC_PUBLIC, name, null, superClass, FastStream.of(baseTraits).map(MixinInfo::name).toArray(new String[0]));
+        // Every class in the traits' hierarchies which is not in the base's.
+        List<ClassInfo> traitHierarchy = FastStream.of(traitInfos)
+                .flatMap(Utils::allParents)
+                .filter(e -> !base.hierarchySet.contains(e))
+                .distinct()
+                .toList();
+
+        MixinClassCache mixinClassCache = this.mixinClassCache;
+        String cacheKey = mixinClassCache != null ? cacheKey(base, traits, mixinInfos, traitHierarchy) : null;
+        if (cacheKey != null) {
+            byte[] bytes = mixinClassCache.get(cacheKey, name);
+            if (bytes != null) {
+                metrics.increment(Counter.CLASS_CACHE_HIT);
+                long end = System.nanoTime();
+                LOGGER.atLevel(LOG_LEVEL).log("Loaded {} with [{}] from class cache in {}", superClass, String.join(", ", traits), Utils.timeString(start, end));
+                return bytes;
+            }
+            metrics.increment(Counter.CLASS_CACHE_MISS);
+        }
 
-        MethodInfo cInit = FastStream.of(baseInfo.getMethods())
-                .filter(e -> e.getName().equals("<init>"))
-                .first();
-        MethodNode mInit = (MethodNode) cNode.visitMethod(ACC_PUBLIC, "<init>", cInit.getDesc(), null, null);
-        Utils.writeBridge(mInit, cInit.getDesc(), INVOKESPECIAL, superClass, "<init>", cInit.getDesc(), false);
-        mInit.instructions.remove(mInit.instructions.getLast());//remove the RETURN from writeBridge
+        // Stream straight to the ClassWriter, only build a ClassNode if the debugger wants one.
+        ClassWriter cw = new ClassWriter(0);
+        ClassNode debugNode = debugger.wantsClassNodes() ? new ClassNode() : null;
+        ClassVisitor cv = debugNode != null ? debugNode : cw;
 
-        List<MixinInfo> prevInfos = new ArrayList<>();
+        cv.visit(V1_8, ACC_PUBLIC, name, null, superClass, FastStream.of(baseTraits).map(MixinInfo::name).toArray(new String[0]));
 
-        for (MixinInfo t : mixinInfos) {
-            {
-                int idx = 0;
-                mInit.visitVarInsn(ALOAD, idx++);
-                for (Type arg : Type.getArgumentTypes(cInit.getDesc())) {
-                    mInit.visitVarInsn(arg.getOpcode(ILOAD), idx);
-                    idx += arg.getSize();
-                }
-                mInit.visitMethodInsn(INVOKESTATIC, t.name(), "$init$", Utils.staticDesc(t.name(), cInit.getDesc()), true);
-            }
+        writeInit(cv, superClass, base.initDesc, base.initArgs, mixinInfos);
+
+        // name+desc -> the most recent trait implementing it, each super goes to the one before.
+        Map<String, MethodFragment> prevImpls = new HashMap<>();
 
-            for (FieldMixin f : t.fields()) {
-                FieldNode fv = (FieldNode) cNode.visitField(ACC_PRIVATE, f.getAccessName(t.name()), f.desc(), null, null);
+        for (TraitFragment t : fragments) {
+            for (FieldFragment f : t.fields) {
+                cv.visitField(ACC_PRIVATE, f.name, f.desc, null, null).visitEnd();
 
-                Type fType = Type.getType(fv.desc);
                 MethodVisitor mv;
-                mv = cNode.visitMethod(ACC_PUBLIC, fv.name, "()" + f.desc(), null, null);
+                mv = cv.visitMethod(ACC_PUBLIC, f.name, f.getterDesc, null, null);
+                mv.visitCode();
                 mv.visitVarInsn(ALOAD, 0);
-                mv.visitFieldInsn(GETFIELD, name, fv.name, fv.desc);
-                mv.visitInsn(fType.getOpcode(IRETURN));
-                mv.visitMaxs(-1, -1);
+                mv.visitFieldInsn(GETFIELD, name, f.name, f.desc);
+                mv.visitInsn(f.returnOp);
+                mv.visitMaxs(f.size, 1);
+                mv.visitEnd();
 
-                mv = cNode.visitMethod(ACC_PUBLIC, fv.name + "_$eq", "(" + f.desc() + ")V", null, null);
+                mv = cv.visitMethod(ACC_PUBLIC, f.setterName, f.setterDesc, null, null);
+                mv.visitCode();
                 mv.visitVarInsn(ALOAD, 0);
-                mv.visitVarInsn(fType.getOpcode(ILOAD), 1);
-                mv.visitFieldInsn(PUTFIELD, name, fv.name, fv.desc);
+                mv.visitVarInsn(f.loadOp, 1);
+                mv.visitFieldInsn(PUTFIELD, name, f.name, f.desc);
                 mv.visitInsn(RETURN);
-                mv.visitMaxs(-1, -1);
+                mv.visitMaxs(1 + f.size, 1 + f.size);
+                mv.visitEnd();
             }
 
-            for (String s : t.supers()) {
-                int nIdx = s.indexOf('(');
-                String sName = s.substring(0, nIdx);
-                String sDesc = s.substring(nIdx);
-                MethodNode mv = (MethodNode) cNode.visitMethod(ACC_PUBLIC, t.name().replace("/", "$") + "$$super$" + sName, sDesc, null, null);
-
-                MixinInfo prev = FastStream.of(prevInfos)
-                        .reversed()
-                        .filter(e -> ColUtils.anyMatch(e.methods(), m -> m.name.equals(sName) && m.desc.equals(sDesc)))
-                        .firstOrDefault();
-                // each super goes to the one before
+            for (SuperFragment s : t.supers) {
+                MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, s.bridgeName, s.desc, null, null);
+                mv.visitCode();
+
+                MethodFragment prev = prevImpls.get(s.key);
                 if (prev != null) {
-                    Utils.writeStaticBridge(mv, sName, prev);
+                    prev.writeStaticForward(mv);
                 } else {
-                    MethodInfo mInfo = Objects.requireNonNull(baseInfo.findPublicImpl(sName, sDesc));
-                    Utils.writeBridge(mv, sDesc, INVOKESPECIAL, mInfo.getOwner().getName(), sName, sDesc, mInfo.getOwner().isInterface());
+                    MethodInfo mInfo = base.superTarget(s.name, s.desc);
+                    Utils.writeBridge(mv, s.desc, INVOKESPECIAL, mInfo.getOwner().getName(), s.name, s.desc, mInfo.getOwner().isInterface());
                 }
-
+                mv.visitEnd();
+            }
+            for (MethodFragment m : t.methods) {
+                prevImpls.put(m.key, m);
             }
-            prevInfos.add(t);
         }
-        mInit.visitInsn(RETURN);
 
         Set<String> methodSigs = new HashSet<>();
-        for (MixinInfo t : Lists.reverse(mixinInfos)) {//last trait gets first pick on methods
-            for (MethodNode m : t.methods()) {
-                if (methodSigs.add(m.name + m.desc)) {
-                    MethodNode mv = (MethodNode) cNode.visitMethod(ACC_PUBLIC, m.name, m.desc, null, m.exceptions.toArray(new String[0]));
-                    Utils.writeStaticBridge(mv, m.name, t);
+        for (TraitFragment t : Lists.reverse(fragments)) {//last trait gets first pick on methods
+            for (MethodFragment m : t.methods) {
+                if (methodSigs.add(m.key)) {
+                    MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, m.name, m.desc, null, m.exceptions);
+                    m.writeStaticForward(mv);
+                    mv.visitEnd();
                 }
             }
         }
 
         // generate synthetic bridge methods for covariant return types
-        Set<ClassInfo> allParentInfos = FastStream.of(baseInfo)
-                .concat(traitInfos)
-                .flatMap(Utils::allParents)
-                .toSet();
-        List<MethodInfo> allParentMethods = FastStream.of(allParentInfos)
-                .flatMap(ClassInfo::getMethods)
-                .toList();
-
         for (String nameDesc : new HashSet<>(methodSigs)) {
             int nIdx = nameDesc.indexOf('(');
             String sName = nameDesc.substring(0, nIdx);
             String sDesc = nameDesc.substring(nIdx);
             String pDesc = sDesc.substring(0, sDesc.lastIndexOf(")") + 1);
-            for (MethodInfo m : allParentMethods) {
-                if (!m.getName().equals(sName) || !m.getDesc().startsWith(pDesc)) continue;
-                if (!methodSigs.add(m.getName() + m.getDesc())) continue;
+            for (ClassInfo info : FastStream.concat(base.hierarchy, traitHierarchy)) {
+                for (MethodInfo m : info.findDeclaredMethods(sName, pDesc)) {
+                    if (!methodSigs.add(m.getName() + m.getDesc())) continue;
 
-                MethodNode mv = (MethodNode) cNode.visitMethod(ACC_PUBLIC | ACC_SYNTHETIC | ACC_BRIDGE, m.getName(), m.getDesc(), null, m.getExceptions());
-                Utils.writeBridge(mv, mv.desc, INVOKEVIRTUAL, cNode.name, sName, sDesc, (cNode.access & ACC_INTERFACE) != 0);
+                    MethodVisitor mv = cv.visitMethod(ACC_PUBLIC | ACC_SYNTHETIC | ACC_BRIDGE, m.getName(), m.getDesc(), null, m.getExceptions());
+                    mv.visitCode();
+                    Utils.writeBridge(mv, m.getDesc(), INVOKEVIRTUAL, name, sName, sDesc, false);
+                    mv.visitEnd();
+                }
             }
         }
+        cv.visitEnd();
 
-        byte[] bytes = ASMHelper.createBytes(cNode, COMPUTE_FRAMES | COMPUTE_MAXS);
+        // Everything above is straight-line code with exact maxs, no need to have ASM compute anything.
+        long writeStart = System.nanoTime();
+        if (debugNode != null) {
+            debugger.generatedClass(debugNode);
+            debugNode.accept(cw);
+        }
+        byte[] bytes = cw.toByteArray();
+        metrics.recordTime(Timer.CLASS_WRITING, System.nanoTime() - writeStart);
+        if (VERIFY_GENERATED) {
+            Utils.verifyClass(bytes, classLoader);
+        }
+        if (cacheKey != null) {
+            mixinClassCache.put(cacheKey, bytes);
+        }
         long end = System.nanoTime();
+        metrics.recordTime(Timer.CLASS_GENERATION, end - start);
+        metrics.increment(Counter.BYTES_GENERATED, bytes.length);
         LOGGER.atLevel(LOG_LEVEL).log("Generation of {} with [{}] took {}", superClass, String.join(", ", traits), Utils.timeString(start, end));
-        return defineClass(name, bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the composite constructor, calling the super constructor then each trait's {@code $init$} in order.
+     */
+    private static void writeInit(ClassVisitor cv, String superClass, String desc, Type[] args, List<MixinInfo> mixinInfos) {
+        int argsSize = Type.getArgumentsAndReturnSizes(desc) >> 2; // Includes 'this'.
+        MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, "<init>", desc, null, null);
+        mv.visitCode();
+        loadThisAndArgs(mv, args);
+        mv.visitMethodInsn(INVOKESPECIAL, superClass, "<init>", desc, false);
+        for (MixinInfo t : mixinInfos) {
+            loadThisAndArgs(mv, args);
+            mv.visitMethodInsn(INVOKESTATIC, t.name(), "$init$", Utils.staticDesc(t.name(), desc), true);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(argsSize, argsSize);
+        mv.visitEnd();
+    }
+
+    private static void loadThisAndArgs(MethodVisitor mv, Type[] args) {
+        int idx = 0;
+        mv.visitVarInsn(ALOAD, idx++);
+        for (Type arg : args) {
+            mv.visitVarInsn(arg.getOpcode(ILOAD), idx);
+            idx += arg.getSize();
+        }
+    }
+
+    /**
+     * Computes the {@link MixinClassCache} key for a composite class.
+     * <p>
+     * The key covers everything which can influence the generated bytes, the generator version,
+     * the loaded {@link MixinLanguageSupport}s, the requested traits in order, which are the composite's
+     * interfaces, the linearized traits, each trait's ClassNode as registered, and the bytes of every
+     * other class in the hierarchy of the base class and traits. The class name is not part of the key,
+     * entries are renamed when they are read.
+     *
+     * @return The key, or {@code null} if a trait was registered without a digest, whilst no cache was set.
+     */
+    private @Nullable String cacheKey(BaseTemplate base, Set<String> traits, List<MixinInfo> mixinInfos, List<ClassInfo> traitHierarchy) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(GENERATOR_VERSION);
+        for (MixinLanguageSupport languageSupport : languageSupportList) {
+            hasher.putString(languageSupport.getClass().getName(), StandardCharsets.UTF_8);
+        }
+        hasher.putInt(traits.size());
+        for (String trait : traits) {
+            hasher.putString(trait, StandardCharsets.UTF_8);
+        }
+        hasher.putInt(mixinInfos.size());
+        for (MixinInfo info : mixinInfos) {
+            HashCode digest = traitDigests.get(info.name());
+            if (digest == null) return null;
+
+            hasher.putString(info.name(), StandardCharsets.UTF_8);
+            hasher.putBytes(digest.asBytes());
+        }
+        for (ClassInfo info : FastStream.concat(base.hierarchy, traitHierarchy)) {
+            // Traits were hashed as registered above.
+            if (traitDigests.containsKey(info.getName())) continue;
+
+            hasher.putString(info.getName(), StandardCharsets.UTF_8);
+            hasher.putBytes(classDigest(info).asBytes());
+        }
+        return hasher.hash().toString();
+    }
+
+    private TraitFragment traitFragment(MixinInfo info) {
+        TraitFragment fragment = traitFragments.get(info.name());
+        if (fragment == null || fragment.info != info) {
+            fragment = new TraitFragment(info);
+            traitFragments.put(info.name(), fragment);
+        }
+        return fragment;
+    }
+
+    private BaseTemplate buildBaseTemplate(String superClass) {
+        ClassInfo baseInfo = getClassInfo(superClass);
+        if (baseInfo == null) throw new IllegalArgumentException("Provided super class does not exist.");
+
+        return new BaseTemplate(baseInfo);
+    }
+
+    private HashCode classDigest(ClassInfo info) {
+        HashCode digest = classDigests.get(info.getName());
+        if (digest == null) {
+            byte[] bytes = getClassBytes(info.getName());
+            if (bytes == null && info instanceof ClassNodeInfo nodeInfo) {
+                // Binary trait, not available from the backend.
+                bytes = ASMHelper.createBytes(nodeInfo.getCNode(), 0);
+            }
+            digest = bytes != null ? Hashing.sha256().hashBytes(bytes) : Hashing.sha256().hashString(info.getName(), StandardCharsets.UTF_8);
+            classDigests.put(info.getName(), digest);
+        }
+        return digest;
     }
 
     @Override
     @SuppressWarnings ("unchecked")
     public <T> Class<T> defineClass(String name, byte[] bytes) {
-        debugger.defineClass(name, bytes);
-        return (Class<T>) classLoader.defineClass(name, bytes);
+        return withGeneration(() -> {
+            debugger.defineClass(name, bytes);
+            long start = System.nanoTime();
+            Class<T> clazz = (Class<T>) classLoader.defineClass(name, bytes);
+            metrics.recordTime(Timer.DEFINE_CLASS, System.nanoTime() - start);
+            return clazz;
+        });
     }
 
     @Override
@@ -276,20 +656,93 @@ public class MixinCompilerImpl implements MixinCompiler {
         if (info != null) {
             return info;
         }
+        // Taken before claiming, so a waiting retire can never block the owner of a claim.
+        return withGeneration(() -> registerTraitLocked(cNode));
+    }
+
+    private MixinInfo registerTraitLocked(ClassNode cNode) {
+        // Traits may be registered from many threads, only one builds and defines each trait.
+        // Parent traits are registered whilst building their children, so are always defined first.
+        InFlight<MixinInfo> ours = new InFlight<>(Thread.currentThread(), new CompletableFuture<>());
+        InFlight<MixinInfo> existing = inFlightTraits.putIfAbsent(cNode.name, ours);
+        if (existing != null) {
+            if (existing.owner == Thread.currentThread()) {
+                throw new IllegalStateException("Circular trait registration of '" + cNode.name + "'");
+            }
+            return existing.join();
+        }
+
+        try {
+            MixinInfo info = mixinMap.get(cNode.name);
+            if (info == null) {
+                info = buildTrait(cNode);
+            }
+            ours.future.complete(info);
+            return info;
+        } catch (Throwable ex) {
+            ours.future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightTraits.remove(cNode.name, ours);
+        }
+    }
 
+    private MixinInfo buildTrait(ClassNode cNode) {
+        long start = System.nanoTime();
+        // Hashed before any language support sees it, the node may differ from the backend's bytes.
+        HashCode digest = mixinClassCache != null ? Hashing.sha256().hashBytes(ASMHelper.createBytes(cNode, 0)) : null;
         for (MixinLanguageSupport languageSupport : languageSupportList) {
-            info = languageSupport.buildMixinTrait(cNode);
+            MixinInfo info = languageSupport.buildMixinTrait(cNode);
             if (info == null) continue;
 
             if (!cNode.name.equals(info.name())) {
                 throw new IllegalStateException("Traits must have the same name as their ClassNode. Got: " + info.name() + ", Expected: " + cNode.name);
             }
+            if (digest != null) {
+                traitDigests.put(info.name(), digest);
+            }
             mixinMap.put(info.name(), info);
+            if (COMPACT_TRAITS) {
+                compactTrait(cNode);
+            } else {
+                byte[] bytes = getClassBytes(info.name());
+                if (bytes != null) {
+                    // Traits are hashed for the MixinClassCache and re-read by language supports, keep them around.
+                    pinnedClassBytes.put(info.name(), bytes);
+                }
+            }
+            metrics.recordTime(Timer.TRAIT_REGISTRATION, System.nanoTime() - start);
             return info;
         }
         throw new IllegalStateException("No MixinLanguageSupport wished to handle class '" + cNode.name + "'");
     }
 
+    /**
+     * Releases everything held for a trait which is not needed to compile it, and records what was released.
+     * <p>
+     * Its class bytes are released, they are read again from the {@link MixinBackend} if anything needs them. The registered ClassNode is only
+     * retained if the trait's ClassInfo was built from it.
+     */
+    private void compactTrait(ClassNode cNode) {
+        String name = cNode.name;
+        ClassInfo info = infoCache.get(name);
+        byte[] bytes = pinnedClassBytes.remove(name);
+        if (bytes == null) {
+            bytes = classBytesCache.getIfPresent(name);
+        }
+        classBytesCache.invalidate(name);
+        structuralNodeCache.invalidate(name);
+
+        boolean retainsClassNode = info instanceof ClassNodeInfo nodeInfo && nodeInfo.getCNode() == cNode;
+        int instructions = 0;
+        if (!retainsClassNode) {
+            for (MethodNode mNode : cNode.methods) {
+                instructions += mNode.instructions.size();
+            }
+        }
+        traitFootprints.put(name, new TraitFootprint(name, bytes != null ? bytes.length : 0, instructions, retainsClassNode));
+    }
+
     private ClassInfo obtainInfo(ClassNode cNode) {
         for (MixinLanguageSupport languageSupport : languageSupportList) {
             ClassInfo info = languageSupport.obtainInfo(cNode);
@@ -302,9 +755,17 @@ public class MixinCompilerImpl implements MixinCompiler {
     }
 
     private @Nullable ClassInfo obtainInfo(String cName) {
-        ClassNode cNode = getClassNode(cName);
-        if (cNode != null) {
-            return obtainInfo(cNode);
+        byte[] bytes = !cName.equals("java/lang/Object") ? getClassBytes(cName) : null;
+        if (bytes != null) {
+            HeaderClassInfo header = HeaderClassInfo.read(this, bytes);
+            Supplier<ClassNode> structural = Suppliers.memoize(() -> getStructuralClassNode(cName));
+            for (MixinLanguageSupport languageSupport : languageSupportList) {
+                ClassInfo info = languageSupport.obtainInfo(header, structural);
+                if (info != null) {
+                    return info;
+                }
+            }
+            throw new IllegalStateException("Java plugin did not create ClassInfo for existing class: " + cName);
         }
 
         try {
@@ -321,16 +782,235 @@ public class MixinCompilerImpl implements MixinCompiler {
     public ClassNode getClassNode(String name) {
         if (name.equals("java/lang/Object")) return null;
 
-        byte[] bytes = classBytesCache.computeIfAbsent(name, mixinBackend::getBytes);
+        byte[] bytes = getClassBytes(name);
         if (bytes == null) return null;
 
         return ASMHelper.createClassNode(bytes, EXPAND_FRAMES);
     }
 
+    @Override
+    public @Nullable ClassNode getStructuralClassNode(String name) {
+        if (name.equals("java/lang/Object")) return null;
+
+        ClassNode cNode = structuralNodeCache.getIfPresent(name);
+        if (cNode != null) return cNode;
+
+        byte[] bytes = getClassBytes(name);
+        if (bytes == null) return null;
+
+        // Not cached if missing, the class may become available later.
+        cNode = ASMHelper.createClassNode(bytes, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        structuralNodeCache.put(name, cNode);
+        return cNode;
+    }
+
+    @Override
+    public byte @Nullable [] getClassBytes(String name) {
+        byte[] bytes = pinnedClassBytes.get(name);
+        if (bytes != null) {
+            metrics.increment(Counter.CLASS_BYTES_CACHE_HIT);
+            return bytes;
+        }
+
+        bytes = classBytesCache.getIfPresent(name);
+        if (bytes != null) {
+            metrics.increment(Counter.CLASS_BYTES_CACHE_HIT);
+            return bytes;
+        }
+        metrics.increment(Counter.CLASS_BYTES_CACHE_MISS);
+        // Not cached if missing, the class may become available later.
+        bytes = mixinBackend.getBytes(name);
+        if (bytes != null) {
+            classBytesCache.put(name, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * State derived only from the super class of a composite, shared by every trait combination on top of it.
+     */
+    private static class BaseTemplate {
+
+        private final ClassInfo info;
+        private final String initDesc;
+        private final Type[] initArgs;
+        private final List<ClassInfo> hierarchy;
+        private final Set<ClassInfo> hierarchySet;
+        private final Map<String, MethodInfo> superTargets = new ConcurrentHashMap<>();
+
+        private BaseTemplate(ClassInfo info) {
+            this.info = info;
+            MethodInfo cInit = FastStream.of(info.getMethods())
+                    .filter(e -> e.getName().equals("<init>"))
+                    .first();
+            initDesc = cInit.getDesc();
+            initArgs = Type.getArgumentTypes(initDesc);
+            hierarchy = Utils.allParents(info).distinct().toList();
+            hierarchySet = new HashSet<>(hierarchy);
+        }
+
+        private MethodInfo superTarget(String name, String desc) {
+            return superTargets.computeIfAbsent(name + desc, e -> Objects.requireNonNull(info.findPublicImpl(name, desc)));
+        }
+    }
+
+    /**
+     * The names, descriptors, opcodes and maxs of everything emitted for a trait, which don't depend
+     * on the composite being generated. Built once per trait, so they aren't derived again for every
+     * trait combination. Method bodies are still emitted for every composite, field accessors and
+     * super bridges depend on the composite's name and the traits before them.
+     */
+    private static class TraitFragment {
+
+        private final MixinInfo info;
+        private final List<MixinInfo> linearized;
+        private final FieldFragment[] fields;
+        private final SuperFragment[] supers;
+        private final MethodFragment[] methods;
+
+        private TraitFragment(MixinInfo info) {
+            this.info = info;
+            linearized = info.linearize().toList();
+            fields = FastStream.of(info.fields())
+                    .map(f -> new FieldFragment(f.getAccessName(info.name()), f.desc()))
+                    .toArray(new FieldFragment[0]);
+            supers = FastStream.of(info.supers())
+                    .map(s -> new SuperFragment(info.name(), s))
+                    .toArray(new SuperFragment[0]);
+            methods = FastStream.of(info.methods())
+                    .map(m -> new MethodFragment(info.name(), m))
+                    .toArray(new MethodFragment[0]);
+        }
+    }
+
+    private static class FieldFragment {
+
+        private final String name;
+        private final String desc;
+        private final String getterDesc;
+        private final String setterName;
+        private final String setterDesc;
+        private final int loadOp;
+        private final int returnOp;
+        private final int size;
+
+        private FieldFragment(String name, String desc) {
+            this.name = name;
+            this.desc = desc;
+            getterDesc = "()" + desc;
+            setterName = name + "_$eq";
+            setterDesc = "(" + desc + ")V";
+            Type type = Type.getType(desc);
+            loadOp = type.getOpcode(ILOAD);
+            returnOp = type.getOpcode(IRETURN);
+            size = type.getSize();
+        }
+    }
+
+    private static class SuperFragment {
+
+        private final String key;
+        private final String name;
+        private final String desc;
+        private final String bridgeName;
+
+        private SuperFragment(String owner, String key) {
+            this.key = key;
+            int nIdx = key.indexOf('(');
+            name = key.substring(0, nIdx);
+            desc = key.substring(nIdx);
+            bridgeName = owner.replace("/", "$") + "$$super$" + name;
+        }
+    }
+
+    private static class MethodFragment {
+
+        private final String key;
+        private final String owner;
+        private final String name;
+        private final String desc;
+        private final String[] exceptions;
+        private final String staticName;
+        private final String staticDesc;
+        private final int[] loadOps;
+        private final int returnOp;
+        private final int maxStack;
+        private final int maxLocals;
+
+        private MethodFragment(String owner, MethodMixin m) {
+            this.owner = owner;
+            key = m.name() + m.desc();
+            name = m.name();
+            desc = m.desc();
+            exceptions = m.exceptions().toArray(new String[0]);
+            staticName = m.name() + "$";
+            staticDesc = Utils.staticDesc(owner, m.desc());
+            Type[] args = Type.getArgumentTypes(m.desc());
+            loadOps = new int[args.length];
+            int locals = 1;
+            for (int i = 0; i < args.length; i++) {
+                loadOps[i] = args[i].getOpcode(ILOAD);
+                locals += args[i].getSize();
+            }
+            Type returnType = Type.getReturnType(m.desc());
+            returnOp = returnType.getOpcode(IRETURN);
+            maxLocals = locals;
+            maxStack = Math.max(locals, returnType.getSize());
+        }
+
+        /**
+         * Same as {@link Utils#writeStaticBridge}, forwarding a method with this fragment's
+         * descriptor to the trait's static implementation.
+         */
+        private void writeStaticForward(MethodVisitor mv) {
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            int idx = 1;
+            for (int op : loadOps) {
+                mv.visitVarInsn(op, idx);
+                idx += op == LLOAD || op == DLOAD ? 2 : 1;
+            }
+            mv.visitMethodInsn(INVOKESTATIC, owner, staticName, staticDesc, true);
+            mv.visitInsn(returnOp);
+            mv.visitMaxs(maxStack, maxLocals);
+        }
+    }
+
+    /**
+     * What compacting a registered trait released.
+     *
+     * @param name                 The trait name.
+     * @param releasedBytes        The size of the trait's class bytes released from the caches, 0 if none were held.
+     * @param releasedInstructions The number of instructions in the registered ClassNode which are no longer retained.
+     * @param retainsClassNode     If the trait's ClassInfo was built from, and still holds, the registered ClassNode.
+     */
+    public record TraitFootprint(String name, int releasedBytes, int releasedInstructions, boolean retainsClassNode) {
+    }
+
+    private record InFlight<T>(Thread owner, CompletableFuture<@Nullable T> future) {
+
+        public @Nullable T join() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                SneakyUtils.throwUnchecked(ex.getCause());
+                return null;
+            }
+        }
+    }
+
     private static class MixinClassLoader extends ClassLoader {
 
-        public MixinClassLoader(MixinBackend mixinBackend) {
-            super(mixinBackend.getContextClassLoader());
+        static {
+            // Allow concurrent class loading and definition, MixinFactories compile in parallel.
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private final int generation;
+
+        public MixinClassLoader(MixinBackend mixinBackend, int generation) {
+            super("MixinCompiler-" + generation, mixinBackend.getContextClassLoader());
+            this.generation = generation;
         }
 
         public Class<?> defineClass(String cName, byte[] bytes) {
@@ -2,17 +2,23 @@ package codechicken.mixin;
 
 import codechicken.mixin.api.MixinCompiler;
 import codechicken.mixin.api.MixinFactory;
+import codechicken.mixin.api.MixinMetrics.Counter;
 import codechicken.mixin.util.ClassInfo;
 import codechicken.mixin.util.FactoryGenerator;
 import codechicken.mixin.util.Utils;
 import com.google.common.collect.ImmutableSet;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiConsumer;
 
 /**
  * Created by covers1624 on 2/17/20.
@@ -20,10 +26,11 @@ import java.util.function.BiConsumer;
 public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
 
     protected final AtomicInteger counter = new AtomicInteger();
-    protected final Map<ImmutableSet<TraitKey>, Class<? extends B>> classCache = new HashMap<>();
-    protected final Map<ImmutableSet<TraitKey>, F> factoryCache = new HashMap<>();
-    protected final Map<Class<?>, ImmutableSet<TraitKey>> traitLookup = new HashMap<>();
-    protected final Map<String, TraitKey> registeredTraits = new HashMap<>();
+    protected final Map<ImmutableSet<TraitKey>, Class<? extends B>> classCache = new ConcurrentHashMap<>();
+    // Futures so racing constructs of the same traits share a single compile, without holding any locks.
+    protected final Map<ImmutableSet<TraitKey>, CompletableFuture<F>> factoryCache = new ConcurrentHashMap<>();
+    protected final Map<Class<?>, ImmutableSet<TraitKey>> traitLookup = new ConcurrentHashMap<>();
+    protected final Map<String, TraitKey> registeredTraits = new ConcurrentHashMap<>();
 
     protected final MixinCompiler mixinCompiler;
     protected final Class<B> baseType;
@@ -32,6 +39,9 @@ public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
 
     protected final FactoryGenerator factoryGenerator;
 
+    // The MixinCompiler generation everything cached by this factory belongs to.
+    private volatile int generation;
+
     public MixinFactoryImpl(MixinCompiler mixinCompiler, Class<B> baseType, Class<F> factoryClass, String classSuffix) {
         this.mixinCompiler = mixinCompiler;
         this.baseType = baseType;
@@ -41,6 +51,10 @@ public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
         factoryGenerator = new FactoryGenerator(mixinCompiler);
         //Validate factory.
         factoryGenerator.findMethod(factoryClass);
+        generation = mixinCompiler.getGeneration();
+        if (mixinCompiler instanceof MixinCompilerImpl impl) {
+            impl.trackFactory(this);
+        }
     }
 
     @Override
@@ -49,11 +63,16 @@ public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
     }
 
     @Override
-    public synchronized TraitKey registerTrait(Class<?> tClass) {
+    public TraitKey registerTrait(Class<?> tClass) {
+        checkGeneration();
         String tName = Utils.asmName(tClass);
         TraitKey trait = registeredTraits.get(tName);
         if (trait != null) return trait;
 
+        if (MixinCompilerImpl.COMPACT_TRAITS) {
+            // Resolved by name first, so the trait's ClassInfo never holds on to the ClassNode parsed below.
+            mixinCompiler.getClassInfo(tName);
+        }
         ClassNode cNode = mixinCompiler.getClassNode(tName);
         if (cNode == null) {
             SneakyUtils.throwUnchecked(new ClassNotFoundException(tName));
@@ -63,7 +82,14 @@ public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
     }
 
     @Override
-    public synchronized TraitKey registerTrait(ClassNode cNode) {
+    public TraitKey registerTrait(ClassNode cNode) {
+        return mixinCompiler.withGeneration(() -> {
+            checkGeneration();
+            return registerTraitLocked(cNode);
+        });
+    }
+
+    private TraitKey registerTraitLocked(ClassNode cNode) {
         String tName = cNode.name;
         TraitKey key = registeredTraits.get(tName);
         if (key != null) {
@@ -76,22 +102,144 @@ public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
         if (!checkParent(parentName, baseInfo)) {
             throw new IllegalArgumentException("Trait '" + tName + "' with resolved parent '" + parentName + "' does not extend base type '" + Utils.asmName(baseType) + "'");
         }
+        // Thread safe, concurrent registrations of the same trait share a single build.
         mixinCompiler.registerTrait(cNode);
         key = new TraitKey(tName);
-        registeredTraits.put(tName, key);
-        return key;
+        TraitKey existing = registeredTraits.putIfAbsent(tName, key);
+        return existing != null ? existing : key;
+    }
+
+    @Override
+    public CompletableFuture<List<TraitKey>> registerTraits(Collection<Class<?>> traits, Executor executor) {
+        checkNotInGeneration("registerTraits");
+        Map<Class<?>, CompletableFuture<TraitKey>> registering = new LinkedHashMap<>();
+        for (Class<?> tClass : traits) {
+            registering.computeIfAbsent(tClass, e -> {
+                try {
+                    return CompletableFuture.supplyAsync(() -> registerTrait(e), executor);
+                } catch (RejectedExecutionException ex) {
+                    return CompletableFuture.failedFuture(ex);
+                }
+            });
+        }
+        return CompletableFuture.allOf(registering.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> FastStream.of(traits)
+                        .map(e -> registering.get(e).join())
+                        .toList()
+                );
     }
 
     @Override
     public F construct(ImmutableSet<TraitKey> traits) {
-        return factoryCache.computeIfAbsent(traits, this::compile);
+        checkGeneration();
+        CompletableFuture<F> future = factoryCache.get(traits);
+        if (future == null) {
+            CompletableFuture<F> newFuture = new CompletableFuture<>();
+            future = factoryCache.putIfAbsent(traits, newFuture);
+            if (future == null) {
+                // We won the race, compile on this thread.
+                mixinCompiler.getMetrics().increment(Counter.FACTORY_CACHE_MISS);
+                future = newFuture;
+                try {
+                    newFuture.complete(mixinCompiler.withGeneration(() -> compile(traits)));
+                } catch (Throwable ex) {
+                    // Don't cache failures, the next construct call will try again.
+                    factoryCache.remove(traits, newFuture);
+                    newFuture.completeExceptionally(ex);
+                }
+            } else {
+                mixinCompiler.getMetrics().increment(Counter.FACTORY_CACHE_HIT);
+            }
+        } else {
+            mixinCompiler.getMetrics().increment(Counter.FACTORY_CACHE_HIT);
+        }
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            SneakyUtils.throwUnchecked(ex.getCause());
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<PrecompileReport> precompile(Collection<ImmutableSet<TraitKey>> traitSets, Executor executor) {
+        checkNotInGeneration("precompile");
+        checkGeneration();
+        long start = System.nanoTime();
+        List<Precompile> precompiles = new ArrayList<>();
+        CompletableFuture<?> defined = CompletableFuture.completedFuture(null);
+        for (ImmutableSet<TraitKey> traits : new LinkedHashSet<>(traitSets)) {
+            // Claim the factoryCache futures up front, in order, so class names are deterministic.
+            CompletableFuture<F> future = new CompletableFuture<>();
+            boolean claimed = factoryCache.putIfAbsent(traits, future) == null;
+            Precompile precompile = new Precompile(traits, claimed ? future : null, claimed ? nextName() : null);
+            precompiles.add(precompile);
+            CompletableFuture<?> generated = CompletableFuture.completedFuture(null);
+            if (claimed) {
+                try {
+                    generated = CompletableFuture.runAsync(precompile::generate, executor);
+                } catch (RejectedExecutionException ex) {
+                    precompile.failure = ex;
+                }
+            }
+            // Define strictly in the order provided, each set as soon as it and every set before it
+            // are generated. Exceptions are captured per Precompile, the chain always continues.
+            defined = CompletableFuture.allOf(defined, generated).handle((v, ex) -> {
+                precompile.define();
+                return null;
+            });
+        }
+        return defined.thenApply(v -> {
+            List<PrecompileEntry> entries = FastStream.of(precompiles)
+                    .map(Precompile::toEntry)
+                    .toList();
+            return new PrecompileReport(entries, System.nanoTime() - start);
+        });
     }
 
     @Override
     public ImmutableSet<TraitKey> getTraitsForClass(Class<?> clazz) {
+        checkGeneration();
         return traitLookup.get(clazz);
     }
 
+    /**
+     * Drops everything cached from a retired {@link MixinCompiler} generation.
+     * Traits must be registered again in the new generation.
+     */
+    protected void checkGeneration() {
+        if (mixinCompiler.getGeneration() == generation) return;
+
+        synchronized (this) {
+            int current = mixinCompiler.getGeneration();
+            if (current == generation) return;
+
+            classCache.clear();
+            factoryCache.clear();
+            traitLookup.clear();
+            registeredTraits.clear();
+            onGenerationRetired();
+            generation = current;
+        }
+    }
+
+    /**
+     * Work started on other threads enters the generation on each of those threads. If the caller
+     * waits for it from within {@link MixinCompiler#withGeneration}, whilst a retire is waiting, it deadlocks.
+     */
+    private void checkNotInGeneration(String method) {
+        if (mixinCompiler instanceof MixinCompilerImpl impl && impl.isInGeneration()) {
+            throw new IllegalStateException(method + " can't be called from within MixinCompiler.withGeneration.");
+        }
+    }
+
+    /**
+     * Called when this factory has dropped its caches after the {@link MixinCompiler}'s
+     * generation was retired. Subclasses should drop anything holding traits or classes.
+     */
+    protected void onGenerationRetired() {
+    }
+
     private boolean checkParent(String parentName, ClassInfo info) {
         if (info.getName().equals(parentName)) return true;
 
@@ -101,17 +249,98 @@ public class MixinFactoryImpl<B, F> implements MixinFactory<B, F> {
         return checkParent(parentName, sClass);
     }
 
-    private synchronized F compile(ImmutableSet<TraitKey> traits) {
-        Class<? extends B> clazz = classCache.computeIfAbsent(traits, e -> {
-            Set<String> traitNames = FastStream.of(traits).map(TraitKey::tName).toImmutableSet();
-            Class<? extends B> compiled = mixinCompiler.compileMixinClass(nextName(), Utils.asmName(baseType), traitNames);
-            traitLookup.put(compiled, traits);
-            return compiled;
-        });
+    private F compile(ImmutableSet<TraitKey> traits) {
+        // Only ever called by the thread which owns the factoryCache future for these traits.
+        Class<? extends B> clazz = classCache.get(traits);
+        if (clazz == null) {
+            clazz = mixinCompiler.compileMixinClass(nextName(), Utils.asmName(baseType), traitNames(traits));
+            traitLookup.put(clazz, traits);
+            classCache.put(traits, clazz);
+        }
         return factoryGenerator.generateFactory(clazz, factoryClass);
     }
 
+    private static Set<String> traitNames(ImmutableSet<TraitKey> traits) {
+        return FastStream.of(traits).map(TraitKey::tName).toImmutableSet();
+    }
+
     private String nextName() {
         return baseType.getSimpleName() + "_" + classSuffix + "$$" + counter.getAndIncrement();
     }
+
+    /**
+     * A single trait set being compiled by {@link #precompile}.
+     * Generation may happen on any thread, definitions happen one at a time, in order.
+     */
+    private class Precompile {
+
+        private final ImmutableSet<TraitKey> traits;
+        private final @Nullable CompletableFuture<F> future;
+        private final @Nullable String name;
+
+        private byte @Nullable [] bytes;
+        private int bytesGeneration;
+        private long generateNanos;
+        private long defineNanos;
+        private @Nullable Throwable failure;
+
+        private Precompile(ImmutableSet<TraitKey> traits, @Nullable CompletableFuture<F> future, @Nullable String name) {
+            this.traits = traits;
+            this.future = future;
+            this.name = name;
+        }
+
+        private void generate() {
+            // Empty trait sets and classes compiled by a previous failed attempt have nothing to generate.
+            if (traits.isEmpty() || classCache.containsKey(traits)) return;
+
+            long start = System.nanoTime();
+            try {
+                bytes = mixinCompiler.withGeneration(() -> {
+                    bytesGeneration = mixinCompiler.getGeneration();
+                    return mixinCompiler.generateMixinClass(name, Utils.asmName(baseType), traitNames(traits));
+                });
+            } catch (UnsupportedOperationException ex) {
+                // This MixinCompiler can only compile and define at once, the set is compiled when it's defined.
+            } catch (Throwable ex) {
+                failure = ex;
+            }
+            generateNanos = System.nanoTime() - start;
+        }
+
+        private void define() {
+            if (future == null) return;
+
+            long start = System.nanoTime();
+            try {
+                if (failure != null) throw failure;
+
+                Class<? extends B> clazz = mixinCompiler.withGeneration(this::defineClass);
+                future.complete(factoryGenerator.generateFactory(clazz, factoryClass));
+            } catch (Throwable ex) {
+                failure = ex;
+                factoryCache.remove(traits, future);
+                future.completeExceptionally(ex);
+            }
+            bytes = null;
+            defineNanos = System.nanoTime() - start;
+        }
+
+        private Class<? extends B> defineClass() {
+            Class<? extends B> clazz = classCache.get(traits);
+            if (clazz == null) {
+                // Bytes generated in a retired generation reference its trait classes, compile them again.
+                clazz = bytes != null && bytesGeneration == mixinCompiler.getGeneration()
+                        ? mixinCompiler.defineClass(name, bytes)
+                        : mixinCompiler.compileMixinClass(name, Utils.asmName(baseType), traitNames(traits));
+                traitLookup.put(clazz, traits);
+                classCache.put(traits, clazz);
+            }
+            return clazz;
+        }
+
+        private PrecompileEntry toEntry() {
+            return new PrecompileEntry(traits, future == null, generateNanos, defineNanos, failure);
+        }
+    }
 }
@@ -10,9 +10,9 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by covers1624 on 20/1/24.
@@ -21,11 +21,30 @@ public abstract class SidedFactory<B, F, T> extends MixinFactoryImpl<B, F> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SidedFactory.class);
 
-    protected final Map<Class<?>, TraitKey> clientTraits = new HashMap<>();
-    protected final Map<Class<?>, TraitKey> serverTraits = new HashMap<>();
+    protected final Map<Class<?>, TraitKey> clientTraits = new ConcurrentHashMap<>();
+    protected final Map<Class<?>, TraitKey> serverTraits = new ConcurrentHashMap<>();
 
-    protected final Map<Class<?>, ImmutableSet<TraitKey>> clientObjectTraitCache = new HashMap<>();
-    protected final Map<Class<?>, ImmutableSet<TraitKey>> serverObjectTraitCache = new HashMap<>();
+    /**
+     * @deprecated Lookups are cached per class in a {@link ClassValue}. These maps are no longer
+     * filled or read, use {@link #getTraitsForObject} instead.
+     */
+    @Deprecated
+    protected final Map<Class<?>, ImmutableSet<TraitKey>> clientObjectTraitCache = new ConcurrentHashMap<>();
+    /**
+     * @deprecated See {@link #clientObjectTraitCache}.
+     */
+    @Deprecated
+    protected final Map<Class<?>, ImmutableSet<TraitKey>> serverObjectTraitCache = new ConcurrentHashMap<>();
+
+    // Bumped whenever a trait is registered for that side, cached sets from an older version are recomputed.
+    private final AtomicInteger clientVersion = new AtomicInteger();
+    private final AtomicInteger serverVersion = new AtomicInteger();
+    private final ClassValue<ObjectTraits> objectTraits = new ClassValue<>() {
+        @Override
+        protected ObjectTraits computeValue(Class<?> type) {
+            return new ObjectTraits();
+        }
+    };
 
     protected SidedFactory(MixinCompiler mc, Class<B> baseType, Class<F> factory, String suffix) {
         super(mc, baseType, factory, suffix);
@@ -54,13 +73,17 @@ public abstract class SidedFactory<B, F, T> extends MixinFactoryImpl<B, F> {
     @AsmName
     @JavaName
     public void registerTrait(Class<?> marker, @Nullable Class<?> clientTrait, @Nullable Class<?> serverTrait) {
-        if (clientTrait != null) {
-            register(clientTraits, marker, clientTrait);
-        }
+        mixinCompiler.withGeneration(() -> {
+            checkGeneration();
+            if (clientTrait != null) {
+                register(clientTraits, marker, clientTrait);
+            }
 
-        if (serverTrait != null) {
-            register(serverTraits, marker, serverTrait);
-        }
+            if (serverTrait != null) {
+                register(serverTraits, marker, serverTrait);
+            }
+            return null;
+        });
     }
 
     /**
@@ -72,31 +95,89 @@ public abstract class SidedFactory<B, F, T> extends MixinFactoryImpl<B, F> {
      * @return The {@link TraitKey}s.
      */
     public ImmutableSet<TraitKey> getTraitsForObject(T thing, boolean client) {
-        return getObjectTraitCache(client).computeIfAbsent(thing.getClass(), clazz -> {
-            Map<Class<?>, TraitKey> traits = getTraitMap(client);
-            return hierarchy(clazz)
-                    .map(traits::get)
-                    .filter(Objects::nonNull)
-                    .toImmutableSet();
-        });
+        checkGeneration();
+        Class<?> clazz = thing.getClass();
+        ObjectTraits traits = objectTraits.get(clazz);
+        int version = getVersion(client).get();
+        Cached cached = client ? traits.client : traits.server;
+        if (cached == null || cached.version() != version) {
+            cached = new Cached(version, computeTraitsForClass(clazz, client));
+            if (client) {
+                traits.client = cached;
+            } else {
+                traits.server = cached;
+            }
+        }
+        return cached.traits();
+    }
+
+    @Override
+    protected void onGenerationRetired() {
+        clientTraits.clear();
+        serverTraits.clear();
+        invalidate(true);
+        invalidate(false);
+    }
+
+    protected ImmutableSet<TraitKey> computeTraitsForClass(Class<?> clazz, boolean client) {
+        Map<Class<?>, TraitKey> traits = getTraitMap(client);
+        ImmutableSet.Builder<TraitKey> builder = ImmutableSet.builder();
+        for (Class<?> c : hierarchy(clazz)) {
+            TraitKey key = traits.get(c);
+            if (key != null) {
+                builder.add(key);
+            }
+        }
+        return builder.build();
     }
 
+    /**
+     * Gets every class and interface in the hierarchy of the given class, each visited once.
+     * <p>
+     * Ordered depth first, the class, then its interfaces, then its super class.
+     *
+     * @param clazz The class.
+     * @return The hierarchy.
+     */
     protected FastStream<Class<?>> hierarchy(Class<?> clazz) {
-        return FastStream.concat(
-                FastStream.of(clazz),
-                FastStream.of(clazz.getInterfaces()).flatMap(this::hierarchy),
-                FastStream.ofNullable(clazz.getSuperclass()).flatMap(this::hierarchy)
-        );
+        Set<Class<?>> visited = new LinkedHashSet<>();
+        Deque<Class<?>> stack = new ArrayDeque<>();
+        stack.push(clazz);
+        while (!stack.isEmpty()) {
+            Class<?> c = stack.pop();
+            if (!visited.add(c)) continue;
+
+            if (c.getSuperclass() != null) {
+                stack.push(c.getSuperclass());
+            }
+            Class<?>[] interfaces = c.getInterfaces();
+            for (int i = interfaces.length - 1; i >= 0; i--) {
+                stack.push(interfaces[i]);
+            }
+        }
+        return FastStream.of(visited);
     }
 
     protected Map<Class<?>, TraitKey> getTraitMap(boolean client) {
         return client ? clientTraits : serverTraits;
     }
 
+    /**
+     * @deprecated See {@link #clientObjectTraitCache}.
+     */
+    @Deprecated
     protected Map<Class<?>, ImmutableSet<TraitKey>> getObjectTraitCache(boolean client) {
         return client ? clientObjectTraitCache : serverObjectTraitCache;
     }
 
+    private AtomicInteger getVersion(boolean client) {
+        return client ? clientVersion : serverVersion;
+    }
+
+    private void invalidate(boolean client) {
+        getVersion(client).incrementAndGet();
+    }
+
     protected void register(Map<Class<?>, TraitKey> map, Class<?> marker, Class<?> trait) {
         String tName = Utils.asmName(trait);
         TraitKey existing = map.get(marker);
@@ -108,6 +189,23 @@ public abstract class SidedFactory<B, F, T> extends MixinFactoryImpl<B, F> {
             }
             return;
         }
-        map.put(marker, registerTrait(trait));
+        if (map.putIfAbsent(marker, registerTrait(trait)) != null) {
+            LOGGER.error("Skipping re-register of trait for '{}' and impl '{}'", marker, tName);
+            return;
+        }
+        if (map == clientTraits) {
+            invalidate(true);
+        } else if (map == serverTraits) {
+            invalidate(false);
+        }
     }
+
+    // Both sides' cached traits for a single class, replaced whole when stale.
+    private static class ObjectTraits {
+
+        private volatile @Nullable Cached client;
+        private volatile @Nullable Cached server;
+    }
+
+    private record Cached(int version, ImmutableSet<TraitKey> traits) { }
 }
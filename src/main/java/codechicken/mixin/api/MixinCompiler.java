@@ -9,6 +9,7 @@ import org.objectweb.asm.tree.ClassNode;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Defines a compiler capable of generating a composite Class, comprised of
@@ -70,6 +71,46 @@ public interface MixinCompiler {
      */
     MixinBackend getMixinBackend();
 
+    /**
+     * Gets the current generation of this MixinCompiler.
+     * <p>
+     * Every trait and class defined by the compiler belongs to its current generation.
+     * When a generation is retired, everything registered and defined in it is dropped.
+     * {@link MixinFactory}s compare this to detect a retired generation and clear their caches.
+     *
+     * @return The generation.
+     */
+    default int getGeneration() {
+        return 0;
+    }
+
+    /**
+     * Runs an action within the current generation.
+     * <p>
+     * The generation can't be retired until the action has finished, so everything it
+     * registers, compiles or caches belongs to a single generation.
+     * <p>
+     * The action must not wait on other threads which use this MixinCompiler. Once a retire is
+     * waiting, they can't enter the generation until the action has finished. For this reason,
+     * {@link MixinFactory#registerTraits} and {@link MixinFactory#precompile} may refuse to
+     * start from within an action.
+     *
+     * @param action The action.
+     * @return The result of the action.
+     */
+    default <T> T withGeneration(Supplier<T> action) {
+        return action.get();
+    }
+
+    /**
+     * Gets the {@link MixinMetrics} for this MixinCompiler.
+     *
+     * @return The MixinMetrics instance.
+     */
+    default MixinMetrics getMetrics() {
+        return MixinMetrics.NullMetrics.INSTANCE;
+    }
+
     /**
      * Get a {@link MixinLanguageSupport} instance with the given name.
      *
@@ -107,6 +148,18 @@ public interface MixinCompiler {
         return clazz == null ? null : getClassInfo(clazz.getName().replace(".", "/"));
     }
 
+    /**
+     * Gets the bytes for the given class name, as provided by the {@link MixinBackend}.
+     * <p>
+     * These may be cached and shared, they must not be modified.
+     *
+     * @param name The Class name.
+     * @return The class bytes, or {@code null} if the class could not be found.
+     */
+    default byte @Nullable [] getClassBytes(@AsmName String name) {
+        return getMixinBackend().getBytes(name);
+    }
+
     /**
      * Loads a {@link ClassNode} for the given class name.
      *
@@ -116,6 +169,21 @@ public interface MixinCompiler {
     @Nullable
     ClassNode getClassNode(@AsmName String name);
 
+    /**
+     * Loads a structural {@link ClassNode} for the given class name.
+     * <p>
+     * Structural nodes only contain the class hierarchy, fields, method signatures and annotations.
+     * Method code, debug info and frames are skipped. These nodes may be cached and shared,
+     * they must not be modified.
+     *
+     * @param name The Class name.
+     * @return The ClassNode.
+     */
+    @Nullable
+    default ClassNode getStructuralClassNode(@AsmName String name) {
+        return getClassNode(name);
+    }
+
     /**
      * Registers a Trait to the {@link MixinCompiler}.
      *
@@ -161,4 +229,22 @@ public interface MixinCompiler {
      */
     <T> Class<T> compileMixinClass(String name, String superClass, Set<String> traits);
 
+    /**
+     * Generates the bytes for a new class with the given name, super Class, and traits,
+     * without defining it. The result can later be passed to {@link #defineClass}.
+     * <p>
+     * This method is thread safe, different classes may be generated in parallel.
+     * <p>
+     * The default implementation does not support this.
+     *
+     * @param name       The name for the class.
+     * @param superClass The name for the super class.
+     * @param traits     The Traits to mixin, must not be empty.
+     * @return The class bytes.
+     * @throws UnsupportedOperationException If this MixinCompiler can't generate classes without defining them.
+     */
+    default byte[] generateMixinClass(@AsmName String name, @AsmName String superClass, Set<String> traits) {
+        throw new UnsupportedOperationException("This MixinCompiler can't generate classes without defining them.");
+    }
+
 }
@@ -1,5 +1,7 @@
 package codechicken.mixin.api;
 
+import org.objectweb.asm.tree.ClassNode;
+
 /**
  * Created by covers1624 on 2/9/20.
  */
@@ -7,6 +9,25 @@ public interface MixinDebugger {
 
     void defineClass(@AsmName String name, byte[] bytes);
 
+    /**
+     * If this debugger wants {@link #generatedClass} callbacks.
+     * Composite classes are normally written straight to bytes, without building a {@link ClassNode}.
+     *
+     * @return If ClassNodes should be built.
+     */
+    default boolean wantsClassNodes() {
+        return false;
+    }
+
+    /**
+     * Called with the {@link ClassNode} of each generated composite class, before it's written.
+     * Only called if {@link #wantsClassNodes()} returns {@code true}. The node must not be modified.
+     *
+     * @param cNode The ClassNode.
+     */
+    default void generatedClass(ClassNode cNode) {
+    }
+
     class NullDebugger implements MixinDebugger {
 
         @Override
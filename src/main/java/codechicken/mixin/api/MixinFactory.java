@@ -1,8 +1,17 @@
 package codechicken.mixin.api;
 
 import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Represents a 'user' facing interface for interacting and caching the {@link MixinCompiler}.
  * <p>
@@ -34,6 +43,42 @@ public interface MixinFactory<B, F> {
      */
     TraitKey registerTrait(@AsmName ClassNode cNode);
 
+    /**
+     * Registers many traits at once.
+     * <p>
+     * Traits are read, analysed and transformed in parallel on the given {@link Executor}.
+     * A trait's parent traits are always registered and defined before the trait itself,
+     * traits shared between several registrations are only built once.
+     * <p>
+     * The {@code registerTrait} methods are also thread safe, this is simply a convenience.
+     * <p>
+     * The default implementation registers the traits one at a time, on the given executor.
+     *
+     * @param traits   The trait classes.
+     * @param executor The executor to register traits on.
+     * @return A future, completed with a TraitKey for each provided trait, in order. If any trait
+     * fails to register, the future completes exceptionally. Other traits remain registered.
+     */
+    default CompletableFuture<List<TraitKey>> registerTraits(Collection<Class<?>> traits, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<TraitKey> keys = new ArrayList<>(traits.size());
+            for (Class<?> tClass : traits) {
+                keys.add(registerTrait(tClass));
+            }
+            return keys;
+        }, executor);
+    }
+
+    /**
+     * Overload of {@link #registerTraits(Collection, Executor)}, registering on the common {@link ForkJoinPool}.
+     *
+     * @param traits The trait classes.
+     * @return A future, completed with a TraitKey for each provided trait, in order.
+     */
+    default CompletableFuture<List<TraitKey>> registerTraits(Collection<Class<?>> traits) {
+        return registerTraits(traits, ForkJoinPool.commonPool());
+    }
+
     /**
      * Returns a factory ({@link F}) capable of constructing a new {@link B} with the given set of traits applied.
      * <p>
@@ -43,12 +88,64 @@ public interface MixinFactory<B, F> {
      * It should be noted that, {@link ImmutableSet} is explicitly used here,
      * as their hashCode is statically computed, making it favourable for use as a
      * key in a Map.
+     * <p>
+     * This method is thread safe. Lookups of previously constructed factories never block,
+     * concurrent calls with the same uncompiled traits will wait on a single compilation.
      *
      * @param traits The traits to apply.
      * @return The Factory.
      */
     F construct(ImmutableSet<TraitKey> traits);
 
+    /**
+     * Compiles the given sets of traits ahead of time, so later calls to {@link #construct}
+     * with these sets are cache hits.
+     * <p>
+     * Class bytes for each set are generated in parallel on the given {@link Executor},
+     * classes and their factories are then defined one at a time in the order the sets were
+     * provided. Sets which are already compiled, or being compiled, are skipped.
+     * <p>
+     * A set is defined as soon as it, and every set before it, has been generated. Until then,
+     * {@link #construct} calls for that set wait for it instead of compiling it again.
+     * <p>
+     * The returned future always completes normally, failures are reported per set
+     * and are not cached, a subsequent {@link #construct} call will try again.
+     * <p>
+     * The default implementation calls {@link #construct} for each set in turn, on the given executor.
+     * Sets are never reported as skipped, and all time is reported as define time.
+     *
+     * @param traitSets The trait sets to compile.
+     * @param executor  The executor to generate classes on.
+     * @return A future, completed with a report of the precompile once all sets are defined.
+     */
+    default CompletableFuture<PrecompileReport> precompile(Collection<ImmutableSet<TraitKey>> traitSets, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            List<PrecompileEntry> entries = new ArrayList<>();
+            for (ImmutableSet<TraitKey> traits : new LinkedHashSet<>(traitSets)) {
+                long setStart = System.nanoTime();
+                Throwable failure = null;
+                try {
+                    construct(traits);
+                } catch (Throwable ex) {
+                    failure = ex;
+                }
+                entries.add(new PrecompileEntry(traits, false, 0, System.nanoTime() - setStart, failure));
+            }
+            return new PrecompileReport(entries, System.nanoTime() - start);
+        }, executor);
+    }
+
+    /**
+     * Overload of {@link #precompile(Collection, Executor)}, generating on the common {@link ForkJoinPool}.
+     *
+     * @param traitSets The trait sets to compile.
+     * @return A future, completed with a report of the precompile once all sets are defined.
+     */
+    default CompletableFuture<PrecompileReport> precompile(Collection<ImmutableSet<TraitKey>> traitSets) {
+        return precompile(traitSets, ForkJoinPool.commonPool());
+    }
+
     /**
      * Gets the traits that were used in compiling the given class.
      * If the given class was not compiled by this factory, simply returns null.
@@ -65,4 +162,25 @@ public interface MixinFactory<B, F> {
      */
     record TraitKey(String tName) {
     }
+
+    /**
+     * The result of a {@link #precompile} call.
+     *
+     * @param entries    An entry for each distinct trait set, in the order they were provided.
+     * @param totalNanos The total time taken.
+     */
+    record PrecompileReport(List<PrecompileEntry> entries, long totalNanos) {
+    }
+
+    /**
+     * Timings for a single trait set of a {@link #precompile} call.
+     *
+     * @param traits        The traits.
+     * @param skipped       If the traits had already been compiled, or were being compiled elsewhere.
+     * @param generateNanos The time taken to generate the class bytes.
+     * @param defineNanos   The time taken to define the class and generate its factory.
+     * @param failure       The exception thrown whilst compiling these traits, if any.
+     */
+    record PrecompileEntry(ImmutableSet<TraitKey> traits, boolean skipped, long generateNanos, long defineNanos, @Nullable Throwable failure) {
+    }
 }
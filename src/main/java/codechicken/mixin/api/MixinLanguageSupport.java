@@ -3,8 +3,10 @@ package codechicken.mixin.api;
 import codechicken.asm.ASMHelper;
 import codechicken.mixin.util.ClassInfo;
 import codechicken.mixin.util.ClassNodeInfo;
+import codechicken.mixin.util.HeaderClassInfo;
 import codechicken.mixin.util.JavaTraitGenerator;
 import codechicken.mixin.util.MixinInfo;
+import codechicken.mixin.util.PrebuiltTrait;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 
@@ -14,6 +16,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.ServiceLoader;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
 import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
@@ -40,6 +43,26 @@ public interface MixinLanguageSupport {
     @Nullable
     ClassInfo obtainInfo(ClassNode cNode);
 
+    /**
+     * Tries to load a {@link ClassInfo} for a class resolved by name, given its {@link HeaderClassInfo}.
+     * <p>
+     * Implementations which can decide from the header alone should do so, a structural
+     * {@link ClassNode} (without code) is only parsed if the supplier is queried. Structural
+     * ClassNodes are cached and shared, they must not be modified.
+     * <p>
+     * By default, this delegates to {@link #obtainInfo(ClassNode)} with a new, complete ClassNode.
+     * Implementations should override this to avoid reading every class resolved by name in full.
+     *
+     * @param header     The HeaderClassInfo.
+     * @param structural Supplier for a structural ClassNode of the class.
+     * @return The ClassInfo.
+     */
+    @Nullable
+    default ClassInfo obtainInfo(HeaderClassInfo header, Supplier<ClassNode> structural) {
+        ClassNode cNode = header.getMixinCompiler().getClassNode(header.getName());
+        return cNode != null ? obtainInfo(cNode) : null;
+    }
+
     /**
      * Tries to build a {@link MixinInfo} for the given {@link ClassNode}.
      * as with {@link #obtainInfo}, only load MixinInfos if you
@@ -85,6 +108,9 @@ public interface MixinLanguageSupport {
 
         protected final MixinCompiler mixinCompiler;
         private BiFunction<MixinCompiler, ClassNode, JavaTraitGenerator> traitGeneratorFactory = JavaTraitGenerator::new;
+        // Prebuilt traits are produced by the default generator, and can't be used with a custom one.
+        private boolean usePrebuilt = PrebuiltTrait.ENABLED;
+        private boolean customGenerator;
 
         public JavaMixinLanguageSupport(MixinCompiler mixinCompiler) {
             this.mixinCompiler = mixinCompiler;
@@ -92,6 +118,18 @@ public interface MixinLanguageSupport {
 
         public void setTraitGeneratorFactory(BiFunction<MixinCompiler, ClassNode, JavaTraitGenerator> factory) {
             traitGeneratorFactory = factory;
+            customGenerator = true;
+            usePrebuilt = false;
+        }
+
+        /**
+         * Sets if prebuilt traits should be loaded when available, defaults to {@link PrebuiltTrait#ENABLED}.
+         * Ignored once a custom trait generator has been set.
+         *
+         * @param usePrebuilt If prebuilt traits should be used.
+         */
+        public void setUsePrebuilt(boolean usePrebuilt) {
+            this.usePrebuilt = usePrebuilt && !customGenerator;
         }
 
         @Override
@@ -99,8 +137,22 @@ public interface MixinLanguageSupport {
             return new ClassNodeInfo(mixinCompiler, cNode);
         }
 
+        @Override
+        public ClassInfo obtainInfo(HeaderClassInfo header, Supplier<ClassNode> structural) {
+            return header;
+        }
+
         @Override
         public MixinInfo buildMixinTrait(ClassNode cNode) {
+            PrebuiltTrait prebuilt = usePrebuilt ? PrebuiltTrait.load(mixinCompiler, cNode.name) : null;
+            if (prebuilt != null) {
+                if (prebuilt.staticBytes() != null) {
+                    mixinCompiler.defineClass(cNode.name + "$", prebuilt.staticBytes());
+                }
+                mixinCompiler.defineClass(cNode.name, prebuilt.traitBytes());
+                return prebuilt.info();
+            }
+
             JavaTraitGenerator generator = traitGeneratorFactory.apply(mixinCompiler, cNode);
             ClassNode sNode = generator.getStaticNode();
             if (sNode != null) {
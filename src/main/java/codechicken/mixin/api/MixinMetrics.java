@@ -0,0 +1,91 @@
+package codechicken.mixin.api;
+
+/**
+ * Receives timings and counters from a {@link MixinCompiler} and the {@link MixinFactory}s using it.
+ * <p>
+ * Implementations must be thread safe, metrics are recorded from any thread compiling or constructing.
+ * See {@link codechicken.mixin.util.SimpleMetrics} for a simple in memory implementation.
+ */
+public interface MixinMetrics {
+
+    /**
+     * Records the duration of an operation.
+     *
+     * @param timer The operation.
+     * @param nanos The duration in nanoseconds.
+     */
+    void recordTime(Timer timer, long nanos);
+
+    /**
+     * Increments a counter.
+     *
+     * @param counter The counter.
+     * @param amount  The amount to add.
+     */
+    void increment(Counter counter, long amount);
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param counter The counter.
+     */
+    default void increment(Counter counter) {
+        increment(counter, 1);
+    }
+
+    enum Timer {
+        /**
+         * Building a {@link codechicken.mixin.util.MixinInfo} for a newly registered trait.
+         */
+        TRAIT_REGISTRATION,
+        /**
+         * Generating the bytes of a composite class, from resolving its traits to the final bytes.
+         * Includes {@link #CLASS_WRITING}.
+         */
+        CLASS_GENERATION,
+        /**
+         * Serializing a generated composite class to bytes. Composites are written with
+         * explicit maxs and no frames, so this is only the cost of the ClassWriter.
+         */
+        CLASS_WRITING,
+        /**
+         * Defining a class via {@link MixinCompiler#defineClass}.
+         */
+        DEFINE_CLASS,
+        /**
+         * Generating and instantiating a factory for a composite class.
+         */
+        FACTORY_GENERATION,
+    }
+
+    enum Counter {
+        INFO_CACHE_HIT,
+        INFO_CACHE_MISS,
+        CLASS_BYTES_CACHE_HIT,
+        CLASS_BYTES_CACHE_MISS,
+        /**
+         * The persistent {@link codechicken.mixin.util.MixinClassCache}.
+         */
+        CLASS_CACHE_HIT,
+        CLASS_CACHE_MISS,
+        FACTORY_CACHE_HIT,
+        FACTORY_CACHE_MISS,
+        /**
+         * The total size in bytes of generated composite classes.
+         */
+        BYTES_GENERATED,
+    }
+
+    class NullMetrics implements MixinMetrics {
+
+        public static final NullMetrics INSTANCE = new NullMetrics();
+
+        @Override
+        public void recordTime(Timer timer, long nanos) {
+        }
+
+        @Override
+        public void increment(Counter counter, long amount) {
+        }
+    }
+}
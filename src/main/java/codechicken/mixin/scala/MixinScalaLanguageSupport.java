@@ -5,6 +5,8 @@ import codechicken.mixin.api.MixinLanguageSupport;
 import codechicken.mixin.scala.ScalaSignature.ClassSymbolRef;
 import codechicken.mixin.util.ClassInfo;
 import codechicken.mixin.util.FieldMixin;
+import codechicken.mixin.util.HeaderClassInfo;
+import codechicken.mixin.util.MethodMixin;
 import codechicken.mixin.util.MixinInfo;
 import net.covers1624.quack.collection.FastStream;
 import org.jetbrains.annotations.Nullable;
@@ -17,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static codechicken.mixin.api.MixinLanguageSupport.LanguageName;
 import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
@@ -40,7 +43,7 @@ public class MixinScalaLanguageSupport implements MixinLanguageSupport {
     public ClassInfo obtainInfo(ClassNode cNode) {
         if (cNode.name.endsWith("$")) {
             String baseName = cNode.name.substring(0, cNode.name.length() - 1);
-            ClassNode baseNode = mixinCompiler.getClassNode(baseName);
+            ClassNode baseNode = mixinCompiler.getStructuralClassNode(baseName);
             if (baseNode != null) {
                 ScalaClassInfo info = scalaInfo(baseNode, true);
                 if (info != null) {
@@ -52,6 +55,14 @@ public class MixinScalaLanguageSupport implements MixinLanguageSupport {
         return scalaInfo(cNode, false);
     }
 
+    @Override
+    public @Nullable ClassInfo obtainInfo(HeaderClassInfo header, Supplier<ClassNode> structural) {
+        // Only Scala classes and objects need a ClassNode.
+        if (!header.getName().endsWith("$") && !header.hasAnnotation("Lscala/reflect/ScalaSignature;")) return null;
+
+        return obtainInfo(structural.get());
+    }
+
     private @Nullable ScalaClassInfo scalaInfo(ClassNode cNode, boolean obj) {
         ScalaSignature sig = ScalaSignature.parse(cNode);
         if (sig == null) return null;
@@ -72,7 +83,7 @@ public class MixinScalaLanguageSupport implements MixinLanguageSupport {
 
         List<MixinInfo> parentTraits = getAndRegisterParentTraits(cNode);
         List<FieldMixin> fields = new ArrayList<>();
-        List<MethodNode> methods = new ArrayList<>();
+        List<MethodMixin> methods = new ArrayList<>();
         List<String> supers = new ArrayList<>();
 
         ClassSymbolRef cSym = info.cSym;
@@ -101,7 +112,7 @@ public class MixinScalaLanguageSupport implements MixinLanguageSupport {
                     if (mNode == null) {
                         throw new IllegalArgumentException("Unable to add mixin trait " + cNode.name + ": " + sym.name() + desc + " found in scala signature but not in class file. Most likely an obfuscation issue.");
                     }
-                    methods.add(mNode);
+                    methods.add(MethodMixin.of(mNode));
                 }
             }
         }
@@ -5,8 +5,8 @@ import net.covers1624.quack.util.SneakyUtils;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.function.Supplier;
 
 /**
  * Created by covers1624 on 18/1/24.
@@ -17,28 +17,58 @@ public class ScalaSignature {
     public final int minor;
     public final SigEntry[] table;
 
-    public ScalaSignature(String sig) {
-        this(parseBytes(sig));
-    }
+    // The decoded pickle, table entries are offsets into this.
+    private final byte[] bytes;
+    // Memoized results of eval and evalS, per table index.
+    private final Object[] values;
+    private final String[] strings;
+    // Table indices for each entry id.
+    private final int[][] tagIndex = new int[256][];
+    // Built lazily, volatile so other threads only ever see fully built maps.
+    private volatile @Nullable Map<String, ObjectSymbol> objects;
+    private volatile @Nullable Map<String, ClassSymbol> classes;
 
-    private ScalaSignature(Bytes bytes) {
-        Reader reader = bytes.reader();
+    public ScalaSignature(String sig) {
+        bytes = parseBytes(sig);
+        // Bounded by the decoded length, anything past it is left over from decoding in place.
+        Reader reader = new Reader(bytes, 0, ByteCodecs.decode(bytes));
         major = reader.readByte();
         minor = reader.readByte();
         table = new SigEntry[reader.readNat()];
         for (int i = 0; i < table.length; i++) {
-            int index = i;
-            int start = reader.pos;
-            int tpe = reader.readByte();
+            byte id = reader.readByte();
             int len = reader.readNat();
-            table[index] = reader.advance(len, () -> new SigEntry(index, start, new Bytes(bytes.arr, reader.pos, len)));
+            table[i] = new SigEntry(i, id, reader.pos, len);
+            reader.skip(len);
+        }
+        values = new Object[table.length];
+        strings = new String[table.length];
+
+        int[] counts = new int[256];
+        for (SigEntry e : table) {
+            counts[e.id() & 0xFF]++;
+        }
+        for (int id = 0; id < counts.length; id++) {
+            tagIndex[id] = new int[counts[id]];
+            counts[id] = 0;
+        }
+        for (SigEntry e : table) {
+            int id = e.id() & 0xFF;
+            tagIndex[id][counts[id]++] = e.index();
         }
     }
 
-    private static Bytes parseBytes(String str) {
-        byte[] bytes = str.getBytes();
-        int len = ByteCodecs.decode(bytes);
-        return new Bytes(bytes, 0, len);
+    private static byte[] parseBytes(String str) {
+        // The annotation string is the classfile's modified UTF-8 constant decoded by ASM.
+        // Scala only stores 7-bit values in it, so each char is exactly one encoded byte.
+        // The 0xC0 0x80 pair has already been decoded to '\0', which ByteCodecs treats the same.
+        // These are decoded in place by the constructor.
+        int len = str.length();
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = (byte) str.charAt(i);
+        }
+        return bytes;
     }
 
     public static @Nullable ScalaSignature parse(ClassNode cNode) {
@@ -52,33 +82,58 @@ public class ScalaSignature {
     }
 
     public <T> List<T> collect(int id) {
-        List<T> list = new ArrayList<>();
-        for (int i = 0; i < table.length; i++) {
-            if (table[i].id() == id) {
-                list.add(evalT(i));
-            }
+        int[] indices = tagIndex[id & 0xFF];
+        List<T> list = new ArrayList<>(indices.length);
+        for (int i : indices) {
+            list.add(evalT(i));
         }
         return list;
     }
 
     public @Nullable ObjectSymbol findObject(String name) {
-        return FastStream.of(this.<ObjectSymbol>collect(7)).filter(e -> e.full().equals(name)).first();
+        Map<String, ObjectSymbol> objects = this.objects;
+        if (objects == null) {
+            objects = new HashMap<>();
+            for (ObjectSymbol sym : this.<ObjectSymbol>collect(7)) {
+                objects.putIfAbsent(sym.full(), sym);
+            }
+            this.objects = objects;
+        }
+        return objects.get(name);
     }
 
     public @Nullable ClassSymbol findClass(String name) {
-        return FastStream.of(this.<ClassSymbol>collect(6)).filter(e -> !e.isModule() && e.full().equals(name)).first();
+        Map<String, ClassSymbol> classes = this.classes;
+        if (classes == null) {
+            classes = new HashMap<>();
+            for (ClassSymbol sym : this.<ClassSymbol>collect(6)) {
+                if (!sym.isModule()) {
+                    classes.putIfAbsent(sym.full(), sym);
+                }
+            }
+            this.classes = classes;
+        }
+        return classes.get(name);
     }
 
     public String evalS(int i) {
+        String s = strings[i];
+        if (s == null) {
+            s = decodeS(i);
+            strings[i] = s;
+        }
+        return s;
+    }
+
+    private String decodeS(int i) {
         SigEntry e = table[i];
-        Bytes bc = e.bytes;
-        Reader bcr = bc.reader();
+        Reader bcr = reader(e);
         return switch (e.id()) {
-            case 1, 2 -> bcr.readString(bc.len);
+            case 1, 2 -> bcr.readString(e.len);
             case 3 -> "<no symbol>";
             case 9, 10 -> {
                 String s = evalS(bcr.readNat());
-                if (bc.pos + bc.len > bcr.pos) {
+                if (bcr.more()) {
                     s = evalS(bcr.readNat()) + "." + s;
                 }
                 yield s;
@@ -100,8 +155,17 @@ public class ScalaSignature {
     }
 
     public Object eval(int i) {
+        Object value = values[i];
+        if (value == null) {
+            value = decode(i);
+            values[i] = value;
+        }
+        return value;
+    }
+
+    private Object decode(int i) {
         SigEntry e = table[i];
-        Reader bcr = e.bytes.reader();
+        Reader bcr = reader(e);
         return switch (e.id()) {
             case 1, 2 -> evalS(i);
             case 3 -> new NoSymbol();
@@ -134,6 +198,10 @@ public class ScalaSignature {
         };
     }
 
+    private Reader reader(SigEntry e) {
+        return new Reader(bytes, e.pos, e.pos + e.len);
+    }
+
     private static Map<String, Literal> arrayElements(List<Object> list) {
         Map<String, Literal> elements = new HashMap<>();
         for (int i = 0; i < list.size(); i += 2) {
@@ -143,9 +211,8 @@ public class ScalaSignature {
     }
 
     // @formatter:off
-    public record SigEntry(int index, int start, Bytes bytes) {
-        public byte id() { return bytes.arr[start]; }
-        @Override public String toString() { return "SigEntry(" + index + ", " + id() + ", " + bytes.len + " bytes)"; }
+    public record SigEntry(int index, byte id, int pos, int len) {
+        @Override public String toString() { return "SigEntry(" + index + ", " + id + ", " + len + " bytes)"; }
     }
     public interface Flags {
         boolean hasFlag(int flag);
@@ -284,25 +351,30 @@ public class ScalaSignature {
 
     private static final class Reader {
 
-        private final Bytes bc;
+        private final byte[] arr;
+        private final int end;
         public int pos;
 
-        private Reader(Bytes bc) {
-            this.bc = bc;
-            pos = bc.pos;
+        private Reader(byte[] arr, int pos, int end) {
+            this.arr = arr;
+            this.pos = pos;
+            this.end = end;
         }
 
         public boolean more() {
-            return pos < bc.pos + bc.len;
+            return pos < end;
         }
 
         public String readString(int len) {
-            return advance(len, () -> new String(Arrays.copyOfRange(bc.arr, pos, pos + len)));
+            readCheck(len);
+            String s = new String(arr, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
         }
 
         public byte readByte() {
             readCheck(1);
-            return bc.arr[pos++];
+            return arr[pos++];
         }
 
         public int readNat() {
@@ -325,24 +397,15 @@ public class ScalaSignature {
             return l;
         }
 
-        public <T> T advance(int len, Supplier<T> f) {
+        public void skip(int len) {
             readCheck(len);
-            T t = f.get();
             pos += len;
-            return t;
         }
 
         private void readCheck(int len) {
-            if (pos + len > bc.pos + bc.len) {
+            if (pos + len > end) {
                 throw new IllegalArgumentException("Ran off the end of bytecode");
             }
         }
     }
-
-    private record Bytes(byte[] arr, int pos, int len) {
-
-        public Reader reader() {
-            return new Reader(this);
-        }
-    }
 }
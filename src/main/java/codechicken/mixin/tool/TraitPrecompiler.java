@@ -0,0 +1,85 @@
+package codechicken.mixin.tool;
+
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.util.PrebuiltTrait;
+import codechicken.mixin.util.Utils;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Transforms Java traits at build time, producing a jar of {@link PrebuiltTrait}s.
+ * <p>
+ * When the produced jar is on the classpath, the Java language support loads the prebuilt
+ * trait instead of transforming it at runtime. The traits, and their hierarchy,
+ * must be on the classpath of this tool.
+ * <p>
+ * Usage: {@code TraitPrecompiler <output jar> <trait class>...}
+ */
+public class TraitPrecompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraitPrecompiler.class);
+
+    private final MixinCompiler compiler;
+
+    public TraitPrecompiler(MixinCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TraitPrecompiler <output jar> <trait class>...");
+            System.exit(1);
+        }
+        Path output = Path.of(args[0]);
+        List<String> traits = Arrays.asList(args).subList(1, args.length);
+        new TraitPrecompiler(MixinCompiler.create()).precompile(traits, output);
+    }
+
+    /**
+     * Transforms the given traits, writing them to a jar.
+     *
+     * @param traits The trait class names.
+     * @param output The jar to write.
+     * @throws IOException If the jar could not be written.
+     */
+    public void precompile(List<String> traits, Path output) throws IOException {
+        long start = System.nanoTime();
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (OutputStream os = Files.newOutputStream(output);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (String trait : traits) {
+                precompile(Utils.asmName(trait)).write((path, bytes) -> {
+                    zos.putNextEntry(new ZipEntry(path));
+                    zos.write(bytes);
+                    zos.closeEntry();
+                });
+            }
+        }
+        LOGGER.info("Precompiled {} traits to {} in {}.", traits.size(), output, Utils.timeString(start, System.nanoTime()));
+    }
+
+    /**
+     * Transforms a single trait.
+     *
+     * @param name The trait name.
+     * @return The PrebuiltTrait.
+     */
+    public PrebuiltTrait precompile(String name) {
+        ClassNode cNode = compiler.getClassNode(name);
+        if (cNode == null) throw new IllegalArgumentException("Unable to find trait class " + name);
+
+        return PrebuiltTrait.build(compiler, cNode);
+    }
+}
@@ -0,0 +1,4 @@
+@NonNullApi
+package codechicken.mixin.tool;
+
+import net.covers1624.quack.annotation.NonNullApi;
@@ -4,6 +4,11 @@ import codechicken.mixin.api.MixinCompiler;
 import net.covers1624.quack.collection.FastStream;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Created by covers1624 on 2/11/20.
  */
@@ -11,10 +16,18 @@ public abstract class ClassInfo {
 
     protected MixinCompiler mixinCompiler;
 
+    private volatile @Nullable Map<String, MethodInfo> implIndex;
+    private volatile @Nullable Map<String, MethodInfo> parentImplIndex;
+    private volatile @Nullable Map<String, List<MethodInfo>> declaredParamIndex;
+
     protected ClassInfo(MixinCompiler mixinCompiler) {
         this.mixinCompiler = mixinCompiler;
     }
 
+    public MixinCompiler getMixinCompiler() {
+        return mixinCompiler;
+    }
+
     public abstract String getName();
 
     public abstract boolean isInterface();
@@ -36,19 +49,83 @@ public abstract class ClassInfo {
     }
 
     public @Nullable MethodInfo findPublicImpl(String name, String desc) {
-        return getAllMethods()
-                .filter(m -> m.getName().equals(name))
-                .filter(m -> m.getDesc().equals(desc))
-                .filter(m -> !m.isAbstract() && !m.isPrivate())
-                .firstOrDefault();
+        return getImplIndex().get(name + desc);
     }
 
     public @Nullable MethodInfo findPublicParentImpl(String name, String desc) {
-        return getParentMethods()
-                .filter(m -> m.getName().equals(name))
-                .filter(m -> m.getDesc().equals(desc))
-                .filter(m -> !m.isAbstract() && !m.isPrivate())
-                .firstOrDefault();
+        return getParentImplIndex().get(name + desc);
+    }
+
+    /**
+     * Lazily builds the name+desc -> public impl index for this class, including parents.
+     * Entries are resolved in the same order as {@link #getAllMethods()}, first match wins.
+     */
+    private Map<String, MethodInfo> getImplIndex() {
+        Map<String, MethodInfo> index = implIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (MethodInfo m : getMethods()) {
+                if (!m.isAbstract() && !m.isPrivate()) {
+                    index.putIfAbsent(m.getName() + m.getDesc(), m);
+                }
+            }
+            for (Map.Entry<String, MethodInfo> entry : getParentImplIndex().entrySet()) {
+                index.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            implIndex = index;
+        }
+        return index;
+    }
+
+    private Map<String, MethodInfo> getParentImplIndex() {
+        Map<String, MethodInfo> index = parentImplIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (ClassInfo parent : FastStream.ofNullable(getSuperClass()).concat(getInterfaces())) {
+                for (Map.Entry<String, MethodInfo> entry : parent.getImplIndex().entrySet()) {
+                    index.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            parentImplIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Finds all methods declared by this class or any of its parents with the given name and parameters,
+     * regardless of return type.
+     *
+     * @param name      The method name.
+     * @param paramDesc The parameter part of the descriptor, I.e: {@code (ILjava/lang/String;)}.
+     * @return The methods.
+     */
+    public List<MethodInfo> findHierarchyMethods(String name, String paramDesc) {
+        return Utils.allParents(this).distinct()
+                .flatMap(e -> e.findDeclaredMethods(name, paramDesc))
+                .toList();
+    }
+
+    /**
+     * Finds all methods declared by this class with the given name and parameters, regardless of return type.
+     * <p>
+     * Each class only indexes its own methods, so parents shared by many classes are indexed once.
+     *
+     * @param name      The method name.
+     * @param paramDesc The parameter part of the descriptor, I.e: {@code (ILjava/lang/String;)}.
+     * @return The methods.
+     */
+    public List<MethodInfo> findDeclaredMethods(String name, String paramDesc) {
+        Map<String, List<MethodInfo>> index = declaredParamIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (MethodInfo m : getMethods()) {
+                String desc = m.getDesc();
+                String key = m.getName() + desc.substring(0, desc.lastIndexOf(')') + 1);
+                index.computeIfAbsent(key, e -> new ArrayList<>(1)).add(m);
+            }
+            declaredParamIndex = index;
+        }
+        return index.getOrDefault(name + paramDesc, List.of());
     }
 
     public @Nullable ClassInfo concreteParent() {
@@ -1,11 +1,18 @@
 package codechicken.mixin.util;
 
+import codechicken.mixin.MixinCompilerImpl;
 import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinMetrics;
 import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
@@ -19,14 +26,31 @@ import static org.objectweb.asm.Opcodes.*;
  */
 public class FactoryGenerator {
 
+    public static final Strategy DEFAULT_STRATEGY = Strategy.valueOf(System.getProperty("codechicken.mixin.factory_strategy", "CLASS"));
+
     private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final String LOOKUP_ANCHOR = "$$MixinLookup";
 
     private final MixinCompiler compiler;
+    private Strategy strategy = DEFAULT_STRATEGY;
 
     public FactoryGenerator(MixinCompiler compiler) {
         this.compiler = compiler;
     }
 
+    /**
+     * Sets how generated factory classes are defined.
+     *
+     * @param strategy The strategy.
+     */
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
     public Method findMethod(Class<?> clazz) {
         if (!clazz.isInterface()) {
             throw new RuntimeException("Class is not an interface.");
@@ -53,7 +77,9 @@ public class FactoryGenerator {
             throw new IllegalArgumentException("Unable to find constructor for " + actualClass.getName() + " that matches Factory method in " + factoryClazz.getName());
         }
 
-        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        long start = System.nanoTime();
+        // Straight-line code with exact maxs, no need to have ASM compute anything.
+        ClassWriter cw = new ClassWriter(0);
         MethodVisitor mv;
 
         String cName = actualClass.getName().replace('.', '/') + "$$Ctor$$" + COUNTER.getAndIncrement();
@@ -64,7 +90,7 @@ public class FactoryGenerator {
         mv.visitVarInsn(ALOAD, 0);
         mv.visitMethodInsn(INVOKESPECIAL, asmName(Object.class), "<init>", "()V", false);
         mv.visitInsn(RETURN);
-        mv.visitMaxs(-1, -1);
+        mv.visitMaxs(1, 1);
         mv.visitEnd();
 
         Type factoryType = Type.getType(factoryMethod);
@@ -81,19 +107,105 @@ public class FactoryGenerator {
         mv.visitMethodInsn(INVOKESPECIAL, asmName(actualClass), "<init>", Type.getMethodDescriptor(Type.VOID_TYPE, params), false);
         mv.visitTypeInsn(CHECKCAST, asmName(factoryType.getReturnType().getInternalName()));
         mv.visitInsn(ARETURN);
-        mv.visitMaxs(-1, -1);
+        mv.visitMaxs(count + 1, count);
         mv.visitEnd();
 
         cw.visitEnd();
 
         byte[] bytes = cw.toByteArray();
+        if (MixinCompilerImpl.VERIFY_GENERATED) {
+            Utils.verifyClass(bytes, actualClass.getClassLoader());
+        }
 
-        Class<F> factory = compiler.defineClass(cName, bytes);
+        Class<F> factory = switch (strategy) {
+            case CLASS -> compiler.defineClass(cName, bytes);
+            case HIDDEN_CLASS -> defineHiddenClass(actualClass, bytes);
+        };
+        F instance;
         try {
-            return factory.getConstructor().newInstance();
+            instance = factory.getConstructor().newInstance();
         } catch (Throwable ex) {
             throw new RuntimeException("Unable to instantiate new factory.", ex);
         }
+        compiler.getMetrics().recordTime(MixinMetrics.Timer.FACTORY_GENERATION, System.nanoTime() - start);
+        return instance;
+    }
+
+    @SuppressWarnings ("unchecked")
+    private static <F> Class<F> defineHiddenClass(Class<?> target, byte[] bytes) {
+        try {
+            return (Class<F>) anchorLookup(target).defineHiddenClass(bytes, true).lookupClass();
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException("Unable to define hidden factory for " + target.getName(), ex);
+        }
+    }
+
+    /**
+     * Gets a full privilege {@link Lookup} in the runtime package of the given class.
+     * <p>
+     * Hidden classes can only be defined with full privilege access, which can't be obtained
+     * from outside the target's module. Instead, a tiny anchor class is defined once per package,
+     * with a private method that returns its own {@link MethodHandles#lookup()}.
+     */
+    private static Lookup anchorLookup(Class<?> target) throws IllegalAccessException {
+        String pkg = target.getPackageName();
+        String anchorName = pkg.isEmpty() ? LOOKUP_ANCHOR : pkg + "." + LOOKUP_ANCHOR;
+        Class<?> anchor = findClass(anchorName, target.getClassLoader());
+        if (anchor == null) {
+            try {
+                anchor = MethodHandles.privateLookupIn(target, MethodHandles.lookup())
+                        .defineClass(generateAnchor(asmName(anchorName)));
+            } catch (LinkageError ex) {
+                // Lost a race with another thread defining the same anchor.
+                anchor = findClass(anchorName, target.getClassLoader());
+                if (anchor == null) throw ex;
+            }
+        }
+        try {
+            MethodHandle lookup = MethodHandles.privateLookupIn(anchor, MethodHandles.lookup())
+                    .findStatic(anchor, "lookup", MethodType.methodType(Lookup.class));
+            return (Lookup) lookup.invokeExact();
+        } catch (IllegalAccessException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException("Failed to obtain lookup from anchor " + anchorName, ex);
+        }
+    }
+
+    private static byte[] generateAnchor(String cName) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_8, ACC_SUPER | ACC_FINAL | ACC_SYNTHETIC, cName, null, asmName(Object.class), null);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;", null, null);
+        mv.visitCode();
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(1, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static @Nullable Class<?> findClass(String name, @Nullable ClassLoader loader) {
+        try {
+            return Class.forName(name, false, loader);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+
+    public enum Strategy {
+        /**
+         * Defines a regular named class through {@link MixinCompiler#defineClass}.
+         * These live as long as the {@link MixinCompiler}'s class loader.
+         */
+        CLASS,
+        /**
+         * Defines a hidden class in the package of the constructed class.
+         * These are not discoverable by name and can be unloaded once the factory is unreachable.
+         */
+        HIDDEN_CLASS,
     }
 
 }
@@ -0,0 +1,162 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.api.MixinCompiler;
+import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.objectweb.asm.ClassReader.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * A {@link ClassInfo} which only holds the class header and method signatures.
+ * <p>
+ * These are read directly with a {@link ClassReader}, skipping code, debug info and frames,
+ * without ever building a {@link org.objectweb.asm.tree.ClassNode}.
+ */
+public class HeaderClassInfo extends ClassInfo {
+
+    private static final String[] EMPTY = new String[0];
+
+    private final String name;
+    private final @Nullable String superName;
+    private final int access;
+    private final String[] interfaceNames;
+    private final String[] annotations;
+    private final List<MethodInfo> methods;
+
+    private volatile @Nullable List<ClassInfo> interfaces;
+
+    private HeaderClassInfo(MixinCompiler mixinCompiler, Reader reader) {
+        super(mixinCompiler);
+        name = reader.name;
+        superName = reader.superName;
+        access = reader.access;
+        interfaceNames = reader.interfaces;
+        annotations = reader.annotations.toArray(EMPTY);
+        MethodInfo[] methods = new MethodInfo[reader.methods.size()];
+        for (int i = 0; i < methods.length; i++) {
+            MethodHeader m = reader.methods.get(i);
+            methods[i] = new HeaderMethodInfo(m.name, m.desc, m.access, m.exceptions);
+        }
+        this.methods = Arrays.asList(methods);
+    }
+
+    /**
+     * Reads a {@link HeaderClassInfo} from the given class bytes.
+     *
+     * @param mixinCompiler The {@link MixinCompiler}.
+     * @param bytes         The class bytes.
+     * @return The HeaderClassInfo.
+     */
+    public static HeaderClassInfo read(MixinCompiler mixinCompiler, byte[] bytes) {
+        Reader reader = new Reader();
+        new ClassReader(bytes).accept(reader, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        return new HeaderClassInfo(mixinCompiler, reader);
+    }
+
+    //@formatter:off
+    @Override public String getName() { return name; }
+    @Override public boolean isInterface() { return (access & ACC_INTERFACE) != 0; }
+    @Override public @Nullable ClassInfo getSuperClass() { return superName != null ? mixinCompiler.getClassInfo(superName) : null; }
+    @Override public Iterable<MethodInfo> getMethods() { return methods; }
+    public @Nullable String getSuperName() { return superName; }
+    public int getAccess() { return access; }
+    //@formatter:on
+
+    @Override
+    public Iterable<ClassInfo> getInterfaces() {
+        List<ClassInfo> interfaces = this.interfaces;
+        if (interfaces == null) {
+            interfaces = FastStream.of(interfaceNames)
+                    .map(mixinCompiler::getClassInfo)
+                    .toList();
+            this.interfaces = interfaces;
+        }
+        return interfaces;
+    }
+
+    /**
+     * Checks if this class has a runtime visible annotation with the given descriptor.
+     *
+     * @param desc The annotation descriptor.
+     * @return If the annotation is present.
+     */
+    public boolean hasAnnotation(String desc) {
+        for (String annotation : annotations) {
+            if (annotation.equals(desc)) return true;
+        }
+        return false;
+    }
+
+    public class HeaderMethodInfo implements MethodInfo {
+
+        private final String name;
+        private final String desc;
+        private final int access;
+        private final String[] exceptions;
+
+        private HeaderMethodInfo(String name, String desc, int access, String @Nullable [] exceptions) {
+            this.name = name;
+            this.desc = desc;
+            this.access = access;
+            this.exceptions = exceptions != null ? exceptions : EMPTY;
+        }
+
+        //@formatter:off
+        @Override public ClassInfo getOwner() { return HeaderClassInfo.this; }
+        @Override public String getName() { return name; }
+        @Override public String getDesc() { return desc; }
+        @Override public String[] getExceptions() { return exceptions; }
+        @Override public boolean isPrivate() { return (access & ACC_PRIVATE) != 0; }
+        @Override public boolean isAbstract() { return (access & ACC_ABSTRACT) != 0; }
+        //@formatter:on
+    }
+
+    private record MethodHeader(String name, String desc, int access, String @Nullable [] exceptions) { }
+
+    private static class Reader extends ClassVisitor {
+
+        private String name;
+        private @Nullable String superName;
+        private int access;
+        private String[] interfaces = EMPTY;
+        private final List<String> annotations = new ArrayList<>(1);
+        private final List<MethodHeader> methods = new ArrayList<>();
+
+        private Reader() {
+            super(ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.name = name;
+            this.superName = superName;
+            this.access = access;
+            if (interfaces != null) {
+                this.interfaces = interfaces;
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (visible) {
+                annotations.add(descriptor);
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            methods.add(new MethodHeader(name, descriptor, access, exceptions));
+            return null;
+        }
+    }
+}
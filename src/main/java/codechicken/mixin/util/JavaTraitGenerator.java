@@ -22,6 +22,12 @@ import static org.objectweb.asm.Opcodes.*;
  */
 public class JavaTraitGenerator {
 
+    /**
+     * The version of the trait transformation, recorded in every {@link PrebuiltTrait}.
+     * Must be bumped whenever the output of this generator changes.
+     */
+    public static final int VERSION = 1;
+
     protected final MixinCompiler mixinCompiler;
     protected final ClassNode cNode;
     protected final ClassNode sNode;
@@ -105,7 +111,10 @@ public class JavaTraitGenerator {
             tNode.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, fieldNameLookup.get(f.name()) + "_$eq", "(" + f.desc() + ")V", null, null);
         });
         cNode.methods.forEach(this::convertMethod);
-        return new MixinInfo(tNode.name, cNode.superName, Collections.emptyList(), traitFields, traitMethods, List.copyOf(supers));
+        List<MethodMixin> methods = FastStream.of(traitMethods)
+                .map(MethodMixin::of)
+                .toList();
+        return new MixinInfo(tNode.name, cNode.superName, Collections.emptyList(), traitFields, methods, List.copyOf(supers));
     }
 
     protected void preCheckNode() {
@@ -190,7 +199,7 @@ public class JavaTraitGenerator {
                     for (int i = 0; i < argumentTypes.length; i++) {
                         Type arg = argumentTypes[i];
                         StackAnalyser.StackEntry entry = entries.get(i);
-                        if (!arg.getInternalName().equals("java/lang/Object") && ClassHierarchyManager.classExtends(cNode.superName.replace("/", "."), arg.getInternalName().replace("/", "."))) {
+                        if (!arg.getInternalName().equals("java/lang/Object") && classExtends(cNode.superName, arg.getInternalName())) {
                             insnList.insert(entry.insn, new TypeInsnNode(CHECKCAST, cNode.superName));
                         }
                     }
@@ -281,6 +290,14 @@ public class JavaTraitGenerator {
                 .findPublicParentImpl(methodName, mInsn.desc);
     }
 
+    // Resolved through the MixinCompiler's ClassInfo, traits may be generated on many threads.
+    private boolean classExtends(String name, String parent) {
+        if (name.equals(parent)) return true;
+
+        ClassInfo info = mixinCompiler.getClassInfo(name);
+        return info != null && info.inheritsFrom(parent);
+    }
+
     private MethodNode staticClone(MethodNode mNode, String name, int access) {
         ClassNode target = mNode.name.equals("<clinit>") ? sNode : tNode;
         String desc = (mNode.access & ACC_STATIC) == 0 ? Utils.staticDesc(cNode.name, mNode.desc) : mNode.desc;
@@ -0,0 +1,15 @@
+package codechicken.mixin.util;
+
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.List;
+
+/**
+ * The signature of a method provided by a trait.
+ */
+public record MethodMixin(String name, String desc, int access, List<String> exceptions) {
+
+    public static MethodMixin of(MethodNode mNode) {
+        return new MethodMixin(mNode.name, mNode.desc, mNode.access, List.copyOf(mNode.exceptions));
+    }
+}
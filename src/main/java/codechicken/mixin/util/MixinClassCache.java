@@ -0,0 +1,130 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.api.AsmName;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.objectweb.asm.Opcodes.ASM9;
+
+/**
+ * A persistent on-disk cache for the bytes of compiled mixin classes.
+ * <p>
+ * Entries are keyed by a fingerprint computed by the {@link codechicken.mixin.api.MixinCompiler},
+ * any change to the inputs of a class produces a new key, stale entries are simply never hit again.
+ * <p>
+ * Keys don't include the class name, generated names depend on the order classes are compiled.
+ * Entries are renamed when read with {@link #get(String, String)}.
+ */
+public class MixinClassCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MixinClassCache.class);
+
+    private final Path folder;
+
+    public MixinClassCache(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Gets the cached bytes for the given key.
+     *
+     * @param key The key.
+     * @return The class bytes, or {@code null} if there is no valid entry.
+     */
+    public byte @Nullable [] get(String key) {
+        Path path = folder.resolve(key + ".class");
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            if (!isClass(bytes)) {
+                LOGGER.warn("Ignoring corrupt class cache entry '{}'.", path);
+                return null;
+            }
+            return bytes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read class cache entry '{}'.", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the cached bytes for the given key, renamed to the given class name.
+     *
+     * @param key  The key.
+     * @param name The name of the class being generated.
+     * @return The class bytes, or {@code null} if there is no valid entry.
+     */
+    public byte @Nullable [] get(String key, @AsmName String name) {
+        byte[] bytes = get(key);
+        if (bytes == null) return null;
+
+        ClassReader reader = new ClassReader(bytes);
+        String cachedName = reader.getClassName();
+        if (cachedName.equals(name)) return bytes;
+
+        // Composites are written with explicit maxs and no frames, nothing to recompute.
+        ClassWriter cw = new ClassWriter(0);
+        reader.accept(new ClassRemapper(cw, new SimpleRemapper(cachedName, name)), 0);
+        return cw.toByteArray();
+    }
+
+    /**
+     * Stores the given bytes in the cache.
+     * <p>
+     * Failures are logged and otherwise ignored, the cache is purely an optimization.
+     *
+     * @param key   The key.
+     * @param bytes The class bytes.
+     */
+    public void put(String key, byte[] bytes) {
+        Path path = folder.resolve(key + ".class");
+        try {
+            Files.createDirectories(folder);
+            // Write to a temp file first, concurrent processes may share the same cache folder.
+            Path tmp = Files.createTempFile(folder, key, ".tmp");
+            try {
+                Files.write(tmp, bytes);
+                Files.move(tmp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write class cache entry '{}'.", path, e);
+        }
+    }
+
+    public Path getFolder() {
+        return folder;
+    }
+
+    private static boolean isClass(byte[] bytes) {
+        if (bytes.length <= 4
+            || (bytes[0] & 0xFF) != 0xCA
+            || (bytes[1] & 0xFF) != 0xFE
+            || (bytes[2] & 0xFF) != 0xBA
+            || (bytes[3] & 0xFF) != 0xBE) {
+            return false;
+        }
+        // A full read, truncated entries fail somewhere past the constant pool.
+        try {
+            new ClassReader(bytes).accept(new ClassVisitor(ASM9) { }, 0);
+            return true;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+}
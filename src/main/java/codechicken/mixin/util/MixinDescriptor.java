@@ -0,0 +1,167 @@
+package codechicken.mixin.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A compact, versioned binary form of a {@link MixinInfo}.
+ * <p>
+ * Strings are stored once, in a pool at the start of the descriptor, and referenced by index.
+ * Parent traits are stored by name, and resolved when decoded. Descriptors are read from a
+ * {@link ByteBuffer}, so can be decoded straight from a memory mapped file.
+ */
+public final class MixinDescriptor {
+
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x4D58494E; // MXIN
+
+    private MixinDescriptor() {
+    }
+
+    /**
+     * Encodes the given {@link MixinInfo}.
+     *
+     * @param info The MixinInfo.
+     * @return The descriptor bytes.
+     * @throws IllegalArgumentException If a count, or the encoded length of a string, exceeds 65535,
+     *                                  or there are more than 65535 unique strings.
+     */
+    public static byte[] encode(MixinInfo info) {
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(body);
+            writeRef(out, pool, info.name());
+            writeRef(out, pool, info.parent());
+            writeU2(out, info.parentTraits().size(), "parent traits");
+            for (MixinInfo parent : info.parentTraits()) {
+                writeRef(out, pool, parent.name());
+            }
+            writeU2(out, info.fields().size(), "fields");
+            for (FieldMixin field : info.fields()) {
+                writeRef(out, pool, field.name());
+                writeRef(out, pool, field.desc());
+                out.writeInt(field.access());
+            }
+            writeU2(out, info.methods().size(), "methods");
+            for (MethodMixin method : info.methods()) {
+                writeRef(out, pool, method.name());
+                writeRef(out, pool, method.desc());
+                out.writeInt(method.access());
+                writeU2(out, method.exceptions().size(), "exceptions");
+                for (String exception : method.exceptions()) {
+                    writeRef(out, pool, exception);
+                }
+            }
+            writeU2(out, info.supers().size(), "supers");
+            for (String sup : info.supers()) {
+                writeRef(out, pool, sup);
+            }
+            out.flush();
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(body.size() + pool.size() * 16);
+            DataOutputStream header = new DataOutputStream(bos);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeShort(pool.size());
+            for (String str : pool.keySet()) {
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                writeU2(header, bytes.length, "bytes in a string");
+                header.write(bytes);
+            }
+            body.writeTo(header);
+            header.flush();
+            return bos.toByteArray();
+        } catch (IOException ex) {
+            // Not possible, only writing to memory.
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Decodes a {@link MixinInfo}, advancing the buffer past the descriptor.
+     *
+     * @param buf     The buffer to read from.
+     * @param parents Resolves parent traits by name.
+     * @return The MixinInfo.
+     * @throws IllegalArgumentException If the descriptor is malformed, from a different version,
+     *                                  or references a parent trait which can't be resolved.
+     */
+    public static MixinInfo decode(ByteBuffer buf, Function<String, @Nullable MixinInfo> parents) {
+        try {
+            if (buf.getInt() != MAGIC) throw new IllegalArgumentException("Not a MixinInfo descriptor.");
+            int version = buf.get() & 0xFF;
+            if (version != VERSION) throw new IllegalArgumentException("Unsupported MixinInfo descriptor version " + version + ", expected " + VERSION);
+
+            String[] pool = new String[readU2(buf)];
+            for (int i = 0; i < pool.length; i++) {
+                byte[] bytes = new byte[readU2(buf)];
+                buf.get(bytes);
+                pool[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            String name = readRef(buf, pool);
+            String parent = readRef(buf, pool);
+            MixinInfo[] parentTraits = new MixinInfo[readU2(buf)];
+            for (int i = 0; i < parentTraits.length; i++) {
+                String pName = readRef(buf, pool);
+                parentTraits[i] = parents.apply(pName);
+                if (parentTraits[i] == null) throw new IllegalArgumentException("Unable to resolve parent trait " + pName + " of " + name);
+            }
+            FieldMixin[] fields = new FieldMixin[readU2(buf)];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = new FieldMixin(readRef(buf, pool), readRef(buf, pool), buf.getInt());
+            }
+            MethodMixin[] methods = new MethodMixin[readU2(buf)];
+            for (int i = 0; i < methods.length; i++) {
+                String mName = readRef(buf, pool);
+                String desc = readRef(buf, pool);
+                int access = buf.getInt();
+                String[] exceptions = new String[readU2(buf)];
+                for (int j = 0; j < exceptions.length; j++) {
+                    exceptions[j] = readRef(buf, pool);
+                }
+                methods[i] = new MethodMixin(mName, desc, access, List.of(exceptions));
+            }
+            String[] supers = new String[readU2(buf)];
+            for (int i = 0; i < supers.length; i++) {
+                supers[i] = readRef(buf, pool);
+            }
+            return new MixinInfo(name, parent, List.of(parentTraits), List.of(fields), List.of(methods), List.of(supers));
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Truncated or corrupt MixinInfo descriptor.", ex);
+        }
+    }
+
+    private static void writeRef(DataOutputStream out, Map<String, Integer> pool, String str) throws IOException {
+        Integer idx = pool.get(str);
+        if (idx == null) {
+            idx = pool.size();
+            if (idx >= 0xFFFF) throw new IllegalArgumentException("Too many strings for a MixinInfo descriptor.");
+            pool.put(str, idx);
+        }
+        out.writeShort(idx);
+    }
+
+    private static void writeU2(DataOutputStream out, int value, String what) throws IOException {
+        if (value > 0xFFFF) throw new IllegalArgumentException("Too many " + what + " for a MixinInfo descriptor. Got " + value + ", limit is 65535.");
+        out.writeShort(value);
+    }
+
+    private static String readRef(ByteBuffer buf, String[] pool) {
+        return pool[readU2(buf)];
+    }
+
+    private static int readU2(ByteBuffer buf) {
+        return buf.getShort() & 0xFFFF;
+    }
+}
@@ -0,0 +1,183 @@
+package codechicken.mixin.util;
+
+import codechicken.asm.ASMHelper;
+import codechicken.mixin.api.MixinCompiler;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.covers1624.quack.io.IOUtils;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+
+/**
+ * A Java trait transformed ahead of time, by {@link codechicken.mixin.tool.TraitPrecompiler}.
+ * <p>
+ * Prebuilt traits are stored as resources under {@link #PREFIX}. {@code <name>.class} is
+ * the trait interface, {@code <name>$.class} the static holder, if required, and {@code <name>.mixin}
+ * the {@link MixinDescriptor} for the trait.
+ * <p>
+ * The metadata records the {@link JavaTraitGenerator#VERSION} and a hash of the trait and every class
+ * in its hierarchy, as the transformation depends on both. Prebuilt traits whose version or hash no
+ * longer matches are ignored and transformed as usual.
+ */
+public record PrebuiltTrait(HashCode sourceHash, MixinInfo info, byte[] traitBytes, byte @Nullable [] staticBytes) {
+
+    /**
+     * If {@link codechicken.mixin.api.MixinLanguageSupport.JavaMixinLanguageSupport} should
+     * load prebuilt traits when available. Off by default, traits are still fully parsed before
+     * the prebuilt trait is looked up, and every registration probes for its resources.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("codechicken.mixin.prebuilt_traits");
+    public static final String PREFIX = "META-INF/mixin-traits/";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrebuiltTrait.class);
+    private static final int MAGIC = 0x4D585452; // MXTR
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Transforms the given trait, the same way it would be at runtime.
+     *
+     * @param compiler The {@link MixinCompiler}.
+     * @param cNode    The trait.
+     * @return The PrebuiltTrait.
+     */
+    public static PrebuiltTrait build(MixinCompiler compiler, ClassNode cNode) {
+        HashCode hash = sourceHash(compiler, cNode.name);
+        if (hash == null) throw new IllegalArgumentException("Unable to find class bytes for trait " + cNode.name);
+
+        JavaTraitGenerator generator = new JavaTraitGenerator(compiler, cNode);
+        ClassNode sNode = generator.getStaticNode();
+        return new PrebuiltTrait(
+                hash,
+                generator.getMixinInfo(),
+                ASMHelper.createBytes(generator.getTraitNode(), COMPUTE_FRAMES | COMPUTE_MAXS),
+                sNode != null ? ASMHelper.createBytes(sNode, COMPUTE_FRAMES | COMPUTE_MAXS) : null
+        );
+    }
+
+    /**
+     * Loads the prebuilt trait for the given class from the {@link MixinCompiler}'s context class loader.
+     *
+     * @param compiler The {@link MixinCompiler}.
+     * @param name     The trait name.
+     * @return The PrebuiltTrait, or {@code null} if there isn't one or it is out of date.
+     */
+    public static @Nullable PrebuiltTrait load(MixinCompiler compiler, String name) {
+        ClassLoader loader = compiler.getMixinBackend().getContextClassLoader();
+        try {
+            byte[] metadata = readResource(loader, PREFIX + name + ".mixin");
+            if (metadata == null) return null;
+
+            ByteBuffer buf = ByteBuffer.wrap(metadata);
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION || buf.getInt() != JavaTraitGenerator.VERSION) {
+                LOGGER.debug("Ignoring prebuilt trait {}, built by a different version.", name);
+                return null;
+            }
+            byte[] hashBytes = new byte[buf.getShort() & 0xFFFF];
+            buf.get(hashBytes);
+            HashCode hash = HashCode.fromBytes(hashBytes);
+            if (!hash.equals(sourceHash(compiler, name))) {
+                LOGGER.debug("Ignoring prebuilt trait {}, it is out of date.", name);
+                return null;
+            }
+            boolean hasStatic = buf.get() != 0;
+            MixinInfo info = MixinDescriptor.decode(buf, compiler::getMixinInfo);
+
+            byte[] traitBytes = readResource(loader, PREFIX + name + ".class");
+            byte[] staticBytes = hasStatic ? readResource(loader, PREFIX + name + "$.class") : null;
+            if (traitBytes == null || hasStatic && staticBytes == null) {
+                LOGGER.warn("Ignoring incomplete prebuilt trait {}.", name);
+                return null;
+            }
+            LOGGER.debug("Loaded prebuilt trait {}.", name);
+            return new PrebuiltTrait(hash, info, traitBytes, staticBytes);
+        } catch (IOException | IllegalArgumentException | BufferUnderflowException ex) {
+            LOGGER.warn("Failed to read prebuilt trait {}.", name, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Computes the hash of the inputs to a trait's transformation.
+     * <p>
+     * This covers the bytes of the trait and every class in its hierarchy, excluding
+     * classes from the JDK, which only vary with the Java version.
+     *
+     * @param compiler The {@link MixinCompiler}.
+     * @param name     The trait name.
+     * @return The hash, or {@code null} if the trait could not be found.
+     */
+    public static @Nullable HashCode sourceHash(MixinCompiler compiler, String name) {
+        ClassInfo info = compiler.getClassInfo(name);
+        if (info == null) return null;
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (ClassInfo c : Utils.allParents(info).distinct()) {
+            hasher.putString(c.getName(), StandardCharsets.UTF_8);
+            if (c.getName().startsWith("java/")) continue;
+
+            byte[] bytes = compiler.getClassBytes(c.getName());
+            if (bytes != null) {
+                hasher.putBytes(bytes);
+            } else if (c == info) {
+                return null;
+            }
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Writes all resources for this trait.
+     *
+     * @param sink Consumer for each resource path and its bytes.
+     * @throws IOException If the sink throws an IOException.
+     */
+    public void write(ResourceSink sink) throws IOException {
+        String name = info.name();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(JavaTraitGenerator.VERSION);
+        byte[] hash = sourceHash.asBytes();
+        out.writeShort(hash.length);
+        out.write(hash);
+        out.writeBoolean(staticBytes != null);
+        out.write(MixinDescriptor.encode(info));
+        out.flush();
+
+        sink.accept(PREFIX + name + ".mixin", bos.toByteArray());
+        sink.accept(PREFIX + name + ".class", traitBytes);
+        if (staticBytes != null) {
+            sink.accept(PREFIX + name + "$.class", staticBytes);
+        }
+    }
+
+    private static byte @Nullable [] readResource(ClassLoader loader, String path) throws IOException {
+        try (InputStream is = loader.getResourceAsStream(path)) {
+            if (is == null) return null;
+            return IOUtils.toBytes(is);
+        }
+    }
+
+    /**
+     * Receives the resources written by {@link #write}.
+     */
+    public interface ResourceSink {
+
+        void accept(String path, byte[] bytes) throws IOException;
+    }
+}
@@ -0,0 +1,137 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.api.MixinMetrics;
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A simple in memory {@link MixinMetrics} implementation.
+ * <p>
+ * Timings are stored in a histogram with power of two nanosecond buckets.
+ */
+public class SimpleMetrics implements MixinMetrics {
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final Histogram[] histograms = new Histogram[Timer.values().length];
+
+    public SimpleMetrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    @Override
+    public void recordTime(Timer timer, long nanos) {
+        histograms[timer.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void increment(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    public Snapshot getSnapshot(Timer timer) {
+        return histograms[timer.ordinal()].snapshot();
+    }
+
+    /**
+     * Computes the hit ratio from a pair of hit and miss counters.
+     *
+     * @param hit  The hit counter.
+     * @param miss The miss counter.
+     * @return The ratio, {@code NaN} if nothing was recorded.
+     */
+    public double getHitRatio(Counter hit, Counter miss) {
+        long hits = getCount(hit);
+        long total = hits + getCount(miss);
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", SimpleMetrics.class.getSimpleName() + "[", "]");
+        for (Counter counter : Counter.values()) {
+            joiner.add(counter + "=" + getCount(counter));
+        }
+        for (Timer timer : Timer.values()) {
+            joiner.add(timer + "=" + getSnapshot(timer));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * A point in time view of a timer histogram.
+     *
+     * @param count      The number of recorded timings.
+     * @param totalNanos The sum of all recorded timings.
+     * @param maxNanos   The largest recorded timing.
+     * @param buckets    The counts per bucket, bucket {@code i} holds timings below {@code 2^i} nanoseconds.
+     */
+    public record Snapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Estimates the given percentile, as the upper bound of the bucket containing it.
+         *
+         * @param percentile The percentile, between 0 and 1.
+         * @return The estimate in nanoseconds.
+         */
+        public long percentileNanos(double percentile) {
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen != 0) {
+                    return Math.min(i == 63 ? Long.MAX_VALUE : 1L << i, maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot[count=" + count
+                   + ", mean=" + (long) meanNanos()
+                   + "ns, p50=" + percentileNanos(0.5)
+                   + "ns, p99=" + percentileNanos(0.99)
+                   + "ns, max=" + maxNanos + "ns]";
+        }
+    }
+
+    private static class Histogram {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        private void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(nanos)));
+        }
+
+        private Snapshot snapshot() {
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new Snapshot(count.sum(), total.sum(), max.get(), counts);
+        }
+    }
+}
@@ -4,12 +4,17 @@ import codechicken.asm.StackAnalyser;
 import net.covers1624.quack.collection.ColUtils;
 import net.covers1624.quack.collection.FastStream;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.util.CheckClassAdapter;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -109,6 +114,12 @@ public class Utils {
         );
     }
 
+    /**
+     * Finishes a bridge call, loading all arguments and returning the result.
+     * <p>
+     * Visits exact maxs, assuming only {@code this} has been pushed to the stack.
+     * Bridges are straight-line code and never need frames.
+     */
     public static void finishBridgeCall(MethodVisitor mv, String mvDesc, int opcode, String owner, String name, String desc, boolean isInterface) {
         Type[] args = Type.getArgumentTypes(mvDesc);
         Type returnType = Type.getReturnType(mvDesc);
@@ -119,7 +130,7 @@ public class Utils {
         }
         mv.visitMethodInsn(opcode, owner, name, desc, isInterface);
         mv.visitInsn(returnType.getOpcode(IRETURN));
-        mv.visitMaxs(-1, -1);//COMPUTE_FRAMES :)
+        mv.visitMaxs(Math.max(localIndex, Type.getReturnType(desc).getSize()), localIndex);
     }
 
     @Deprecated // This should not be used, specify isInterface explicitly.
@@ -133,6 +144,47 @@ public class Utils {
     }
 
     public static void writeStaticBridge(MethodNode mv, String mName, MixinInfo info) {
-        writeBridge(mv, mv.desc, INVOKESTATIC, info.name(), mName + "$", staticDesc(info.name(), mv.desc), true);
+        writeStaticBridge(mv, mv.desc, mName, info);
+    }
+
+    public static void writeStaticBridge(MethodVisitor mv, String mvDesc, String mName, MixinInfo info) {
+        writeBridge(mv, mvDesc, INVOKESTATIC, info.name(), mName + "$", staticDesc(info.name(), mvDesc), true);
+    }
+
+    /**
+     * Checks a class written with explicit maxs and without frames.
+     * <p>
+     * The maxs of every method must match those computed by ASM, and the class must
+     * pass the ASM verifier.
+     *
+     * @param bytes  The class bytes.
+     * @param loader The ClassLoader to resolve referenced classes from.
+     * @throws IllegalStateException If the class fails either check.
+     */
+    public static void verifyClass(byte[] bytes, ClassLoader loader) {
+        ClassNode written = new ClassNode();
+        new ClassReader(bytes).accept(written, 0);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        new ClassReader(bytes).accept(cw, 0);
+        ClassNode computed = new ClassNode();
+        new ClassReader(cw.toByteArray()).accept(computed, 0);
+
+        for (int i = 0; i < written.methods.size(); i++) {
+            MethodNode w = written.methods.get(i);
+            MethodNode c = computed.methods.get(i);
+            if (w.maxStack != c.maxStack || w.maxLocals != c.maxLocals) {
+                throw new IllegalStateException(String.format(
+                        "Incorrect maxs for %s.%s%s. Expected stack %d, locals %d. Got stack %d, locals %d.",
+                        written.name, w.name, w.desc, c.maxStack, c.maxLocals, w.maxStack, w.maxLocals
+                ));
+            }
+        }
+
+        StringWriter sw = new StringWriter();
+        CheckClassAdapter.verify(new ClassReader(bytes), loader, false, new PrintWriter(sw));
+        if (sw.getBuffer().length() != 0) {
+            throw new IllegalStateException("Class " + written.name + " failed verification:\n" + sw);
+        }
     }
 }
@@ -0,0 +1,224 @@
+package codechicken.mixin;
+
+import codechicken.mixin.api.MixinBackend;
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.api.MixinMetrics.Counter;
+import codechicken.mixin.fixture.TestBase;
+import codechicken.mixin.fixture.TestFactory;
+import codechicken.mixin.fixture.TraitA;
+import codechicken.mixin.fixture.TraitB;
+import codechicken.mixin.fixture.TraitC;
+import codechicken.mixin.fixture.WideBase;
+import codechicken.mixin.fixture.WideFactory;
+import codechicken.mixin.fixture.WideTrait;
+import codechicken.mixin.util.ClassInfo;
+import codechicken.mixin.util.ClassNodeInfo;
+import codechicken.mixin.util.SimpleMetrics;
+import codechicken.mixin.util.Utils;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MixinCompilerTests {
+
+    @Test
+    public void testCompositeVerifies() throws ReflectiveOperationException {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "verify");
+        factory.registerTrait(TraitA.class);
+        factory.registerTrait(TraitB.class);
+        factory.registerTrait(TraitC.class);
+
+        // tick and value are chained through super bridges across all three traits,
+        // TraitB adds wide fields, wide static forwards and a covariant bridge for self.
+        String name = "codechicken/mixin/fixture/Verify$$0";
+        byte[] bytes = compiler.generateMixinClass(name, Utils.asmName(TestBase.class), traits(TraitA.class, TraitB.class, TraitC.class));
+        Class<? extends TestBase> clazz = compiler.defineClass(name, bytes);
+        Utils.verifyClass(bytes, clazz.getClassLoader());
+
+        ClassNode cNode = new ClassNode();
+        new ClassReader(bytes).accept(cNode, 0);
+        Assertions.assertNotNull(method(cNode, "self", "()Ljava/lang/Object;"));
+        Assertions.assertNotNull(method(cNode, "self", "()Lcodechicken/mixin/fixture/TestBase;"));
+        Assertions.assertNotNull(method(cNode, "codechicken$mixin$fixture$TraitB$$b_$eq", "(J)V"));
+        Assertions.assertNotNull(method(cNode, "codechicken$mixin$fixture$TraitB$$scale", "()D"));
+        Assertions.assertEquals(2, cNode.methods.stream().filter(e -> e.name.endsWith("$$super$tick")).count());
+        Assertions.assertEquals(3, cNode.methods.stream().filter(e -> e.name.endsWith("$$super$value")).count());
+
+        TestBase obj = clazz.getConstructor().newInstance();
+        obj.tick();
+        obj.tick();
+        Assertions.assertEquals(2, obj.ticks);
+        Assertions.assertEquals(122, obj.value());
+        Assertions.assertEquals(2, (int) clazz.getMethod("getA").invoke(obj));
+        Assertions.assertEquals(9L, (long) clazz.getMethod("getB").invoke(obj));
+        Assertions.assertEquals(9 * 2 * 0.5D + 1.5D, (double) clazz.getMethod("scaled", long.class, double.class).invoke(obj, 2L, 1.5D));
+        Assertions.assertTrue((boolean) clazz.getMethod("isSelf").invoke(obj));
+        Assertions.assertEquals(TestBase.class, clazz.getMethod("self").invoke(obj).getClass());
+        // Through the bridge.
+        Assertions.assertEquals(TestBase.class, obj.self().getClass());
+    }
+
+    @Test
+    public void testWideConstructorVerifies() {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        MixinFactoryImpl<WideBase, WideFactory> factory = new MixinFactoryImpl<>(compiler, WideBase.class, WideFactory.class, "verify");
+        TraitKey trait = factory.registerTrait(WideTrait.class);
+
+        String name = "codechicken/mixin/fixture/WideVerify$$0";
+        byte[] bytes = compiler.generateMixinClass(name, Utils.asmName(WideBase.class), traits(WideTrait.class));
+        Class<? extends WideBase> clazz = compiler.defineClass(name, bytes);
+        Utils.verifyClass(bytes, clazz.getClassLoader());
+
+        ClassNode cNode = new ClassNode();
+        new ClassReader(bytes).accept(cNode, 0);
+        MethodNode init = method(cNode, "<init>", "(JDI)V");
+        Assertions.assertNotNull(init);
+        Assertions.assertEquals(6, init.maxLocals);
+
+        WideBase obj = factory.construct(ImmutableSet.of(trait)).create(3L, 0.5D, 7);
+        Assertions.assertEquals(3L, obj.l);
+        Assertions.assertEquals(7, obj.i);
+        Assertions.assertEquals(3 + 0.5D + 7 + (3 * 0.5D + 7), obj.sum());
+    }
+
+    @Test
+    public void testCompactTraits() {
+        Assumptions.assumeTrue(MixinCompilerImpl.COMPACT_TRAITS);
+        SimpleMetrics metrics = new SimpleMetrics();
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        compiler.setMetrics(metrics);
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "compact");
+        String name = Utils.asmName(TraitB.class);
+        byte[] bytes = compiler.getClassBytes(name);
+        Assertions.assertNotNull(bytes);
+        // Resolved before the trait is registered, it sees the same ClassInfo.
+        ClassInfo child = compiler.getClassInfo(TraitBChild.class);
+
+        factory.registerTrait(TraitB.class);
+        ClassInfo info = compiler.getClassInfo(name);
+        Assertions.assertFalse(info instanceof ClassNodeInfo);
+        Assertions.assertSame(info, child.getSuperClass());
+
+        MixinCompilerImpl.TraitFootprint footprint = compiler.getTraitFootprints().get(name);
+        Assertions.assertNotNull(footprint);
+        Assertions.assertEquals(bytes.length, footprint.releasedBytes());
+        Assertions.assertTrue(footprint.releasedInstructions() > 0);
+        Assertions.assertFalse(footprint.retainsClassNode());
+
+        // The bytes were released, they are read from the backend again.
+        long misses = metrics.getCount(Counter.CLASS_BYTES_CACHE_MISS);
+        Assertions.assertArrayEquals(bytes, compiler.getClassBytes(name));
+        Assertions.assertEquals(misses + 1, metrics.getCount(Counter.CLASS_BYTES_CACHE_MISS));
+
+        Assertions.assertEquals(2, factory.construct(ImmutableSet.of(new TraitKey(name))).create().value());
+    }
+
+    @Test
+    public void testCompactTraitsUseSuppliedNode() {
+        Assumptions.assumeTrue(MixinCompilerImpl.COMPACT_TRAITS);
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "compact");
+        String name = Utils.asmName(TraitA.class);
+
+        // Transformed, so it differs from the class the backend has.
+        ClassNode cNode = compiler.getClassNode(name);
+        cNode.fields.add(new FieldNode(Opcodes.ACC_PRIVATE, "extra", "I", null, null));
+        factory.registerTrait(cNode);
+        Assertions.assertTrue(compiler.getClassInfo(name) instanceof ClassNodeInfo info && info.getCNode() == cNode);
+        Assertions.assertTrue(compiler.getMixinInfo(name).fields().stream().anyMatch(e -> e.name().equals("extra")));
+
+        MixinCompilerImpl.TraitFootprint footprint = compiler.getTraitFootprints().get(name);
+        Assertions.assertTrue(footprint.retainsClassNode());
+        Assertions.assertEquals(0, footprint.releasedInstructions());
+
+        byte[] bytes = compiler.generateMixinClass("codechicken/mixin/fixture/Supplied$$0", Utils.asmName(TestBase.class), traits(TraitA.class));
+        ClassNode composite = new ClassNode();
+        new ClassReader(bytes).accept(composite, 0);
+        Assertions.assertTrue(composite.fields.stream().anyMatch(e -> e.name.endsWith("extra")));
+    }
+
+    @Test
+    public void testClassBytesMissNotCached() {
+        Map<String, byte[]> late = new HashMap<>();
+        MixinCompilerImpl compiler = new MixinCompilerImpl(new MixinBackend.SimpleMixinBackend() {
+            @Override
+            public byte @Nullable [] getBytes(String name) {
+                return name.startsWith("fake/") ? late.get(name) : super.getBytes(name);
+            }
+        });
+        String name = "fake/Late";
+        Assertions.assertNull(compiler.getClassBytes(name));
+        Assertions.assertNull(compiler.getStructuralClassNode(name));
+
+        // The class appears after it was first looked up.
+        byte[] bytes = compiler.getClassBytes(Utils.asmName(TraitA.class));
+        late.put(name, bytes);
+        Assertions.assertSame(bytes, compiler.getClassBytes(name));
+        Assertions.assertNotNull(compiler.getStructuralClassNode(name));
+
+        CacheStats stats = compiler.getClassBytesCacheStats();
+        // Only the bytes for the last structural node were cached, both misses for fake/Late were looked up.
+        Assertions.assertEquals(1, stats.hitCount());
+        Assertions.assertEquals(4, stats.missCount());
+    }
+
+    @Test
+    public void testClassBytesCacheWeight() {
+        int size = 1024 * 1024;
+        long capacity = MixinCompilerImpl.CLASS_BYTES_CACHE_SIZE / size;
+        Assumptions.assumeTrue(capacity <= 64);
+        AtomicInteger loads = new AtomicInteger();
+        MixinCompilerImpl compiler = new MixinCompilerImpl(new MixinBackend.SimpleMixinBackend() {
+            @Override
+            public byte @Nullable [] getBytes(String name) {
+                loads.incrementAndGet();
+                return new byte[size];
+            }
+        });
+
+        int count = (int) capacity * 2;
+        for (int i = 0; i < count; i++) {
+            compiler.getClassBytes("fake/Big" + i);
+        }
+        Assertions.assertEquals(count, loads.get());
+        Assertions.assertTrue(compiler.getClassBytesCacheStats().evictionCount() >= count - capacity);
+
+        // No more than the weight bound is retained, everything else is loaded again.
+        for (int i = 0; i < count; i++) {
+            compiler.getClassBytes("fake/Big" + i);
+        }
+        Assertions.assertTrue(loads.get() - count >= count - capacity);
+    }
+
+    private static MethodNode method(ClassNode cNode, String name, String desc) {
+        return cNode.methods.stream()
+                .filter(e -> e.name.equals(name) && e.desc.equals(desc))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public static class TraitBChild extends TraitB { }
+
+    private static Set<String> traits(Class<?>... traits) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Class<?> trait : traits) {
+            names.add(Utils.asmName(trait));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,406 @@
+package codechicken.mixin;
+
+import codechicken.mixin.api.MixinBackend;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinDebugger;
+import codechicken.mixin.api.MixinFactory;
+import codechicken.mixin.api.MixinFactory.PrecompileEntry;
+import codechicken.mixin.api.MixinFactory.PrecompileReport;
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.api.MixinLanguageSupport;
+import codechicken.mixin.api.MixinMetrics.Counter;
+import codechicken.mixin.fixture.TestBase;
+import codechicken.mixin.fixture.TestFactory;
+import codechicken.mixin.fixture.TraitA;
+import codechicken.mixin.fixture.TraitB;
+import codechicken.mixin.fixture.TraitC;
+import codechicken.mixin.fixture.WideTrait;
+import codechicken.mixin.util.ClassInfo;
+import codechicken.mixin.util.JavaTraitGenerator;
+import codechicken.mixin.util.MixinInfo;
+import codechicken.mixin.util.SimpleMetrics;
+import codechicken.mixin.util.Utils;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MixinFactoryTests {
+
+    @Test
+    public void testConcurrentConstruct() throws InterruptedException {
+        SimpleMetrics metrics = new SimpleMetrics();
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        compiler.setMetrics(metrics);
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(compiler);
+        ImmutableSet<TraitKey> traits = ImmutableSet.of(factory.registerTrait(TraitA.class), factory.registerTrait(TraitB.class));
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<TestFactory>> futures = new ArrayList<>();
+            for (int i = 0; i < threads * 4; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    return factory.construct(traits);
+                }, executor));
+            }
+            start.countDown();
+
+            Set<TestFactory> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (CompletableFuture<TestFactory> future : futures) {
+                distinct.add(future.join());
+            }
+            // Every racing construct shares a single compile.
+            Assertions.assertEquals(1, distinct.size());
+            Assertions.assertEquals(1, metrics.getCount(Counter.FACTORY_CACHE_MISS));
+            Assertions.assertEquals(futures.size() - 1, metrics.getCount(Counter.FACTORY_CACHE_HIT));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        TestBase obj = factory.construct(traits).create();
+        obj.tick();
+        Assertions.assertEquals(1, obj.ticks);
+        Assertions.assertEquals(traits, factory.getTraitsForClass(obj.getClass()));
+    }
+
+    @Test
+    public void testFailedConstructIsNotCached() {
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(new MixinCompilerImpl());
+        ImmutableSet<TraitKey> traits = ImmutableSet.of(new TraitKey("codechicken/mixin/fixture/NotRegistered"));
+
+        Assertions.assertThrows(RuntimeException.class, () -> factory.construct(traits));
+        Assertions.assertFalse(factory.factoryCache.containsKey(traits));
+    }
+
+    @Test
+    public void testPrecompile() {
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(new MixinCompilerImpl());
+        TraitKey a = factory.registerTrait(TraitA.class);
+        TraitKey b = factory.registerTrait(TraitB.class);
+        TraitKey c = factory.registerTrait(TraitC.class);
+        TraitKey missing = new TraitKey("codechicken/mixin/fixture/NotRegistered");
+        TestFactory cachedA = factory.construct(ImmutableSet.of(a)); // $$0
+
+        PrecompileReport report = factory.precompile(List.of(
+                ImmutableSet.of(a),
+                ImmutableSet.of(b),
+                ImmutableSet.of(a, b, c),
+                ImmutableSet.of(c, missing),
+                ImmutableSet.of(b),
+                ImmutableSet.of(c)
+        ), ForkJoinPool.commonPool()).join();
+
+        // Duplicates are dropped, order is kept.
+        List<PrecompileEntry> entries = report.entries();
+        Assertions.assertEquals(List.of(
+                ImmutableSet.of(a),
+                ImmutableSet.of(b),
+                ImmutableSet.of(a, b, c),
+                ImmutableSet.of(c, missing),
+                ImmutableSet.of(c)
+        ), entries.stream().map(PrecompileEntry::traits).toList());
+        Assertions.assertTrue(report.totalNanos() > 0);
+
+        // Already compiled.
+        Assertions.assertTrue(entries.get(0).skipped());
+        Assertions.assertSame(cachedA, factory.construct(ImmutableSet.of(a)));
+
+        // Names are assigned in the order provided, regardless of which generates first.
+        for (int i = 1; i < entries.size(); i++) {
+            PrecompileEntry entry = entries.get(i);
+            Assertions.assertFalse(entry.skipped());
+            Assertions.assertTrue(entry.defineNanos() > 0);
+            if (i == 3) continue;
+
+            Assertions.assertNull(entry.failure());
+            TestBase obj = factory.construct(entry.traits()).create();
+            Assertions.assertEquals("TestBase_test$$" + i, obj.getClass().getSimpleName());
+            Assertions.assertEquals(entry.traits(), factory.getTraitsForClass(obj.getClass()));
+        }
+        Assertions.assertEquals(122, factory.construct(ImmutableSet.of(a, b, c)).create().value());
+
+        // Failures are reported, and not cached.
+        Assertions.assertNotNull(entries.get(3).failure());
+        Assertions.assertFalse(factory.factoryCache.containsKey(ImmutableSet.of(c, missing)));
+    }
+
+    @Test
+    public void testPrecompileDefinesInOrder() {
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(new MixinCompilerImpl());
+        ImmutableSet<TraitKey> first = ImmutableSet.of(factory.registerTrait(TraitA.class));
+        ImmutableSet<TraitKey> second = ImmutableSet.of(factory.registerTrait(TraitB.class));
+        ImmutableSet<TraitKey> third = ImmutableSet.of(factory.registerTrait(TraitC.class));
+
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        CompletableFuture<PrecompileReport> report = factory.precompile(List.of(first, second, third), tasks::add);
+        Assertions.assertEquals(3, tasks.size());
+
+        // Generate the second set first, it can't be defined until the first set is.
+        Runnable firstTask = tasks.pollFirst();
+        tasks.pollFirst().run();
+        Assertions.assertFalse(factory.factoryCache.get(second).isDone());
+
+        // Each set is available as soon as it, and every set before it, is defined.
+        firstTask.run();
+        Assertions.assertTrue(factory.factoryCache.get(first).isDone());
+        Assertions.assertTrue(factory.factoryCache.get(second).isDone());
+        Assertions.assertFalse(factory.factoryCache.get(third).isDone());
+        Assertions.assertFalse(report.isDone());
+
+        tasks.pollFirst().run();
+        Assertions.assertTrue(report.isDone());
+        Assertions.assertEquals(11, factory.construct(first).create().value());
+        Assertions.assertEquals(2, factory.construct(second).create().value());
+        Assertions.assertEquals(101, factory.construct(third).create().value());
+    }
+
+    @Test
+    public void testRegisterTraitsParallel() throws ReflectiveOperationException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 20; round++) {
+                MixinCompiler compiler = MixinCompiler.create(
+                        new MixinBackend.SimpleMixinBackend(),
+                        new MixinDebugger.NullDebugger(),
+                        List.of(ChainLanguageSupport.class, MixinLanguageSupport.JavaMixinLanguageSupport.class)
+                );
+                ChainLanguageSupport support = compiler.getLanguageSupport("chain");
+                MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "chain");
+
+                // TraitC's parent is TraitB, whose parent is TraitA. Children and parents race each other.
+                List<TraitKey> keys = factory.registerTraits(List.of(TraitC.class, TraitB.class, TraitA.class, TraitC.class), executor).join();
+                Assertions.assertEquals(List.of(key(TraitC.class), key(TraitB.class), key(TraitA.class), key(TraitC.class)), keys);
+                for (Class<?> trait : List.of(TraitA.class, TraitB.class, TraitC.class)) {
+                    Assertions.assertEquals(1, support.builds.get(Utils.asmName(trait)).get(), trait.getName());
+                }
+
+                // TraitC alone brings in its parents. TraitA's isSelf passes itself as a Tickable, which must be cast.
+                TestBase obj = factory.construct(ImmutableSet.of(keys.get(0))).create();
+                Assertions.assertEquals(122, obj.value());
+                Assertions.assertTrue((boolean) obj.getClass().getMethod("isSelf").invoke(obj));
+
+                // A failing trait fails the future, the others stay registered. WideTrait doesn't extend TestBase.
+                CompletionException ex = Assertions.assertThrows(CompletionException.class, () -> factory.registerTraits(List.of(WideTrait.class, TraitC.class), executor).join());
+                Assertions.assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+                Assertions.assertEquals(key(TraitC.class), factory.registerTrait(TraitC.class));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetireClearsIdleFactories() {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(compiler);
+        ImmutableSet<TraitKey> traits = ImmutableSet.of(factory.registerTrait(TraitA.class));
+        factory.construct(traits).create();
+        Assertions.assertFalse(factory.classCache.isEmpty());
+
+        // Nothing touches the factory after the retire, it's cleared anyway.
+        compiler.retireGeneration();
+        Assertions.assertTrue(factory.classCache.isEmpty());
+        Assertions.assertTrue(factory.factoryCache.isEmpty());
+        Assertions.assertTrue(factory.traitLookup.isEmpty());
+        Assertions.assertTrue(factory.registeredTraits.isEmpty());
+    }
+
+    @Test
+    public void testRetireWithinGenerationThrows() {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        Assertions.assertThrows(IllegalStateException.class, () -> compiler.withGeneration(compiler::retireGeneration));
+        Assertions.assertEquals(0, compiler.getGeneration());
+    }
+
+    @Test
+    public void testAsyncWithinGenerationThrows() {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(compiler);
+        ImmutableSet<TraitKey> traits = ImmutableSet.of(factory.registerTrait(TraitA.class));
+
+        // Joining either of these whilst a retire is waiting would deadlock.
+        Assertions.assertThrows(IllegalStateException.class, () -> compiler.withGeneration(() -> factory.registerTraits(List.of(TraitB.class))));
+        Assertions.assertThrows(IllegalStateException.class, () -> compiler.withGeneration(() -> factory.precompile(List.of(traits))));
+        Assertions.assertNull(compiler.getMixinInfo(Utils.asmName(TraitB.class)));
+        Assertions.assertFalse(factory.factoryCache.containsKey(traits));
+    }
+
+    @Test
+    public void testRetireWaitsForRegistration() throws InterruptedException {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(compiler);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<TraitKey> registration = CompletableFuture.supplyAsync(() -> compiler.withGeneration(() -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return factory.registerTrait(TraitA.class);
+        }));
+        entered.await();
+        CompletableFuture<Integer> retire = CompletableFuture.supplyAsync(compiler::retireGeneration);
+
+        Thread.sleep(100);
+        Assertions.assertFalse(retire.isDone());
+        Assertions.assertEquals(0, compiler.getGeneration());
+
+        release.countDown();
+        Assertions.assertEquals(key(TraitA.class), registration.join());
+        Assertions.assertEquals(1, retire.join());
+        // The registration finished in the retired generation, and was dropped with it.
+        Assertions.assertNull(compiler.getMixinInfo(Utils.asmName(TraitA.class)));
+        Assertions.assertTrue(factory.registeredTraits.isEmpty());
+    }
+
+    @Test
+    public void testDefaultPrecompile() {
+        MixinFactory<TestBase, TestFactory> factory = new DelegatingFactory(newFactory(new MixinCompilerImpl()));
+        ImmutableSet<TraitKey> good = ImmutableSet.of(factory.registerTrait(TraitA.class), factory.registerTrait(TraitB.class));
+        ImmutableSet<TraitKey> bad = ImmutableSet.of(new TraitKey("codechicken/mixin/fixture/NotRegistered"));
+        PrecompileReport report = factory.precompile(List.of(good, bad, good)).join();
+        Assertions.assertEquals(2, report.entries().size());
+        Assertions.assertNull(report.entries().get(0).failure());
+        Assertions.assertNotNull(report.entries().get(1).failure());
+        Assertions.assertEquals(22, factory.construct(good).create().value());
+    }
+
+    @Test
+    public void testDefaultRegisterTraits() {
+        MixinFactory<TestBase, TestFactory> factory = new DelegatingFactory(newFactory(new MixinCompilerImpl()));
+        List<TraitKey> keys = factory.registerTraits(List.of(TraitA.class, TraitB.class)).join();
+        Assertions.assertEquals(List.of(key(TraitA.class), key(TraitB.class)), keys);
+        Assertions.assertEquals(22, factory.construct(ImmutableSet.copyOf(keys)).create().value());
+
+        // Failures complete the future exceptionally.
+        CompletionException ex = Assertions.assertThrows(CompletionException.class, () -> factory.registerTraits(List.of(WideTrait.class)).join());
+        Assertions.assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+    }
+
+    @Test
+    public void testPrecompileWithoutGenerate() {
+        MixinCompilerImpl impl = new MixinCompilerImpl();
+        MixinFactoryImpl<TestBase, TestFactory> factory = newFactory(new DefineOnlyCompiler(impl));
+        ImmutableSet<TraitKey> traits = ImmutableSet.of(factory.registerTrait(TraitA.class));
+
+        // The compiler can't generate without defining, sets are compiled when they are defined.
+        PrecompileReport report = factory.precompile(List.of(traits)).join();
+        Assertions.assertNull(report.entries().get(0).failure());
+        Assertions.assertEquals(11, factory.construct(traits).create().value());
+    }
+
+    static MixinFactoryImpl<TestBase, TestFactory> newFactory(MixinCompiler compiler) {
+        return new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "test");
+    }
+
+    static MixinFactoryImpl<TestBase, TestFactory> newFactory(MixinCompilerImpl compiler) {
+        return new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "test");
+    }
+
+    private static TraitKey key(Class<?> trait) {
+        return new TraitKey(Utils.asmName(trait));
+    }
+
+    /**
+     * Only implements what {@link MixinFactory} requires, everything else is a default.
+     */
+    private record DelegatingFactory(MixinFactory<TestBase, TestFactory> delegate) implements MixinFactory<TestBase, TestFactory> {
+
+        //@formatter:off
+        @Override public MixinCompiler getMixinCompiler() { return delegate.getMixinCompiler(); }
+        @Override public TraitKey registerTrait(Class<?> tClass) { return delegate.registerTrait(tClass); }
+        @Override public TraitKey registerTrait(ClassNode cNode) { return delegate.registerTrait(cNode); }
+        @Override public TestFactory construct(ImmutableSet<TraitKey> traits) { return delegate.construct(traits); }
+        @Override public ImmutableSet<TraitKey> getTraitsForClass(Class<?> clazz) { return delegate.getTraitsForClass(clazz); }
+        //@formatter:on
+    }
+
+    /**
+     * Only implements what {@link MixinCompiler} requires, so can't generate classes without defining them.
+     */
+    private record DefineOnlyCompiler(MixinCompiler delegate) implements MixinCompiler {
+
+        //@formatter:off
+        @Override public MixinBackend getMixinBackend() { return delegate.getMixinBackend(); }
+        @Override public <T extends MixinLanguageSupport> @Nullable T getLanguageSupport(String name) { return delegate.getLanguageSupport(name); }
+        @Override public @Nullable ClassInfo getClassInfo(String name) { return delegate.getClassInfo(name); }
+        @Override public @Nullable ClassInfo getClassInfo(ClassNode node) { return delegate.getClassInfo(node); }
+        @Override public @Nullable ClassNode getClassNode(String name) { return delegate.getClassNode(name); }
+        @Override public MixinInfo registerTrait(ClassNode cNode) { return delegate.registerTrait(cNode); }
+        @Override public @Nullable MixinInfo getMixinInfo(String name) { return delegate.getMixinInfo(name); }
+        @Override public <T> Class<T> defineClass(String name, byte[] bytes) { return delegate.defineClass(name, bytes); }
+        @Override public <T> Class<T> getDefinedClass(String name) { return delegate.getDefinedClass(name); }
+        @Override public <T> Class<T> compileMixinClass(String name, String superClass, Set<String> traits) { return delegate.compileMixinClass(name, superClass, traits); }
+        //@formatter:on
+    }
+
+    /**
+     * Java traits can't have parent traits, this chains TraitA, TraitB and TraitC
+     * the way Scala traits extending each other are.
+     */
+    @MixinLanguageSupport.LanguageName ("chain")
+    @MixinLanguageSupport.SortingIndex (0)
+    public static class ChainLanguageSupport extends MixinLanguageSupport.JavaMixinLanguageSupport {
+
+        private static final Map<String, String> PARENTS = Map.of(
+                Utils.asmName(TraitB.class), Utils.asmName(TraitA.class),
+                Utils.asmName(TraitC.class), Utils.asmName(TraitB.class)
+        );
+
+        private final Map<String, AtomicInteger> builds = new ConcurrentHashMap<>();
+
+        public ChainLanguageSupport(MixinCompiler mixinCompiler) {
+            super(mixinCompiler);
+            // As with Scala, a child trait's interface extends its parent's.
+            setTraitGeneratorFactory((mc, cNode) -> new JavaTraitGenerator(mc, cNode) {
+                @Override
+                public ClassNode getTraitNode() {
+                    ClassNode tNode = super.getTraitNode();
+                    String parent = PARENTS.get(cNode.name);
+                    if (!tNode.interfaces.contains(parent)) {
+                        tNode.interfaces.add(parent);
+                    }
+                    return tNode;
+                }
+            });
+        }
+
+        @Override
+        public @Nullable MixinInfo buildMixinTrait(ClassNode cNode) {
+            builds.computeIfAbsent(cNode.name, e -> new AtomicInteger()).incrementAndGet();
+            String parent = PARENTS.get(cNode.name);
+            if (parent == null) return null;
+
+            MixinInfo parentInfo = mixinCompiler.registerTrait(mixinCompiler.getClassNode(parent));
+            MixinInfo info = super.buildMixinTrait(cNode);
+            return new MixinInfo(info.name(), info.parent(), List.of(parentInfo), info.fields(), info.methods(), info.supers());
+        }
+    }
+}
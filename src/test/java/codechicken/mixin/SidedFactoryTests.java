@@ -0,0 +1,135 @@
+package codechicken.mixin;
+
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.fixture.TestBase;
+import codechicken.mixin.fixture.TestFactory;
+import codechicken.mixin.fixture.TraitA;
+import codechicken.mixin.fixture.TraitB;
+import codechicken.mixin.fixture.TraitC;
+import codechicken.mixin.util.Utils;
+import com.google.common.collect.ImmutableSet;
+import net.covers1624.quack.collection.FastStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class SidedFactoryTests {
+
+    @Test
+    public void testHierarchyOrder() {
+        TestSidedFactory factory = new TestSidedFactory(new MixinCompilerImpl());
+        for (Class<?> clazz : List.of(Thing.class, OtherThing.class, LinkedHashMap.class, ConcurrentSkipListMap.class)) {
+            // The old recursive walk, keeping the first occurrence of each class.
+            List<Class<?>> expected = new ArrayList<>(new LinkedHashSet<>(recursiveHierarchy(clazz)));
+            Assertions.assertEquals(expected, factory.hierarchy(clazz).toList(), clazz.getName());
+        }
+    }
+
+    @Test
+    public void testTraitsForObject() {
+        TestSidedFactory factory = new TestSidedFactory(new MixinCompilerImpl());
+        factory.registerTrait(MarkerB.class, TraitB.class);
+        factory.registerTrait(MarkerA.class, TraitA.class, null);
+        factory.registerTrait(MarkerC.class, null, TraitC.class);
+
+        // Ordered by hierarchy, not registration.
+        Assertions.assertEquals(List.of(key(TraitA.class), key(TraitB.class)), factory.getTraitsForObject(new Thing(), true).asList());
+        Assertions.assertEquals(List.of(key(TraitC.class), key(TraitB.class)), factory.getTraitsForObject(new Thing(), false).asList());
+        Assertions.assertSame(factory.getTraitsForObject(new Thing(), true), factory.getTraitsForObject(new Thing(), true));
+        Assertions.assertEquals(List.of(key(TraitB.class)), factory.getTraitsForObject(new OtherThing(), true).asList());
+
+        // Re-registering a marker is ignored.
+        factory.registerTrait(MarkerB.class, TraitC.class);
+        Assertions.assertEquals(List.of(key(TraitA.class), key(TraitB.class)), factory.getTraitsForObject(new Thing(), true).asList());
+    }
+
+    @Test
+    public void testLateRegistration() {
+        TestSidedFactory factory = new TestSidedFactory(new MixinCompilerImpl());
+        factory.registerTrait(MarkerB.class, TraitB.class);
+        Assertions.assertEquals(List.of(key(TraitB.class)), factory.getTraitsForObject(new Thing(), true).asList());
+        Assertions.assertEquals(List.of(key(TraitB.class)), factory.getTraitsForObject(new Thing(), false).asList());
+
+        // Sets cached before the registration are recomputed.
+        factory.registerTrait(MarkerA.class, TraitA.class, null);
+        Assertions.assertEquals(List.of(key(TraitA.class), key(TraitB.class)), factory.getTraitsForObject(new Thing(), true).asList());
+        Assertions.assertEquals(List.of(key(TraitB.class)), factory.getTraitsForObject(new Thing(), false).asList());
+        Assertions.assertSame(factory.getTraitsForObject(new Thing(), true), factory.getTraitsForObject(new Thing(), true));
+    }
+
+    @Test
+    public void testHierarchyOverride() {
+        TestSidedFactory factory = new TestSidedFactory(new MixinCompilerImpl()) {
+            @Override
+            protected FastStream<Class<?>> hierarchy(Class<?> clazz) {
+                return FastStream.of(clazz);
+            }
+        };
+        factory.registerTrait(MarkerB.class, TraitB.class);
+        factory.registerTrait(OtherThing.class, TraitC.class);
+        Assertions.assertEquals(List.of(), factory.getTraitsForObject(new Thing(), true).asList());
+        Assertions.assertEquals(List.of(key(TraitC.class)), factory.getTraitsForObject(new OtherThing(), true).asList());
+    }
+
+    @Test
+    public void testRetireGeneration() {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        TestSidedFactory factory = new TestSidedFactory(compiler);
+        factory.registerTrait(MarkerA.class, TraitA.class);
+        ImmutableSet<TraitKey> traits = factory.getTraitsForObject(new Thing(), true);
+        TestBase first = factory.construct(traits).create();
+        Assertions.assertEquals(11, first.value());
+
+        compiler.retireGeneration();
+        // Nothing from the retired generation is visible.
+        Assertions.assertEquals(List.of(), factory.getTraitsForObject(new Thing(), true).asList());
+        IllegalStateException ex = Assertions.assertThrows(IllegalStateException.class, () -> factory.construct(traits));
+        Assertions.assertEquals("Trait codechicken/mixin/fixture/TraitA is not registered", ex.getMessage());
+
+        // Registering the same marker again works, and compiles in the new generation.
+        factory.registerTrait(MarkerA.class, TraitA.class);
+        Assertions.assertEquals(traits, factory.getTraitsForObject(new Thing(), true));
+        TestBase second = factory.construct(traits).create();
+        Assertions.assertEquals(11, second.value());
+        Assertions.assertNotSame(first.getClass(), second.getClass());
+        Assertions.assertNotSame(first.getClass().getClassLoader(), second.getClass().getClassLoader());
+    }
+
+    private static List<Class<?>> recursiveHierarchy(Class<?> clazz) {
+        List<Class<?>> list = new ArrayList<>();
+        list.add(clazz);
+        for (Class<?> iface : clazz.getInterfaces()) {
+            list.addAll(recursiveHierarchy(iface));
+        }
+        if (clazz.getSuperclass() != null) {
+            list.addAll(recursiveHierarchy(clazz.getSuperclass()));
+        }
+        return list;
+    }
+
+    private static TraitKey key(Class<?> trait) {
+        return new TraitKey(Utils.asmName(trait));
+    }
+
+    public interface MarkerA { }
+
+    public interface MarkerB { }
+
+    public interface MarkerC extends MarkerB { }
+
+    public static class OtherThing implements MarkerB { }
+
+    public static class Thing extends OtherThing implements MarkerA, MarkerC { }
+
+    public static class TestSidedFactory extends SidedFactory<TestBase, TestFactory, Object> {
+
+        public TestSidedFactory(MixinCompilerImpl compiler) {
+            super(compiler, TestBase.class, TestFactory.class, "sided");
+        }
+    }
+}
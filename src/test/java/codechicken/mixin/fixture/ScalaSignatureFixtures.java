@@ -0,0 +1,141 @@
+package codechicken.mixin.fixture;
+
+import codechicken.mixin.scala.ByteCodecs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic ScalaSignature annotation values, describing a trait with a number of methods.
+ * <p>
+ * Only the subset of the pickle format understood by {@link codechicken.mixin.scala.ScalaSignature} is emitted.
+ */
+public class ScalaSignatureFixtures {
+
+    private static final int TRAIT = 0x02000000;
+    private static final int ABSTRACT = 0x00000080;
+    private static final int METHOD = 0x00000200;
+    private static final int MODULE = 0x00000400;
+    private static final int PARAM = 0x00002000;
+
+    /**
+     * Generates the signature for {@code codechicken.mixin.fixture.<name>}, and its companion object.
+     *
+     * @param name    The simple name of the trait.
+     * @param methods The number of {@code def method<i>(x: Int): Int} methods to add.
+     * @return The annotation value.
+     */
+    public static String generateSignature(String name, int methods) {
+        Pickle pickle = new Pickle();
+        int cc = pickle.ext(pickle.termName("codechicken"), -1);
+        int mixin = pickle.ext(pickle.termName("mixin"), cc);
+        int fixture = pickle.ext(pickle.termName("fixture"), mixin);
+        int scala = pickle.ext(pickle.termName("scala"), -1);
+        int thisScala = pickle.entry(13, scala);
+        int anyRef = pickle.entry(16, thisScala, pickle.ext(pickle.typeName("AnyRef"), scala));
+        int intType = pickle.entry(16, thisScala, pickle.ext(pickle.typeName("Int"), scala));
+
+        // The companion's module class comes first, it shares the trait's name.
+        int moduleSym = pickle.reserve();
+        int moduleInfo = pickle.entry(19, moduleSym, anyRef);
+        pickle.set(moduleSym, 6, pickle.typeName(name), fixture, MODULE, moduleInfo);
+        int objectType = pickle.entry(16, thisScala, moduleSym);
+        pickle.entry(7, pickle.termName(name), fixture, MODULE, objectType);
+
+        int classSym = pickle.reserve();
+        int classInfo = pickle.entry(19, classSym, anyRef);
+        pickle.set(classSym, 6, pickle.typeName(name), fixture, TRAIT | ABSTRACT, classInfo);
+
+        int x = pickle.termName("x");
+        for (int i = 0; i < methods; i++) {
+            int method = pickle.reserve();
+            int param = pickle.entry(8, x, method, PARAM, intType);
+            int methodType = pickle.entry(20, intType, param);
+            pickle.set(method, 8, pickle.termName("method" + i), classSym, METHOD, methodType);
+        }
+        return pickle.encode();
+    }
+
+    private static class Pickle {
+
+        private final List<byte[]> entries = new ArrayList<>();
+
+        public int termName(String name) {
+            return add(1, name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public int typeName(String name) {
+            return add(2, name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public int ext(int name, int owner) {
+            return owner == -1 ? entry(9, name) : entry(9, name, owner);
+        }
+
+        public int reserve() {
+            entries.add(null);
+            return entries.size() - 1;
+        }
+
+        public int entry(int tag, int... nats) {
+            return set(reserve(), tag, nats);
+        }
+
+        public int set(int index, int tag, int... nats) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            for (int nat : nats) {
+                writeNat(payload, nat);
+            }
+            entries.set(index, entry(tag, payload.toByteArray()));
+            return index;
+        }
+
+        private int add(int tag, byte[] payload) {
+            entries.add(entry(tag, payload));
+            return entries.size() - 1;
+        }
+
+        private static byte[] entry(int tag, byte[] payload) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(tag);
+            writeNat(out, payload.length);
+            out.writeBytes(payload);
+            return out.toByteArray();
+        }
+
+        public String encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(5); // Major
+            out.write(0); // Minor
+            writeNat(out, entries.size());
+            for (byte[] entry : entries) {
+                out.writeBytes(entry);
+            }
+            // The annotation value is the encoded bytes as modified UTF-8, 0xC0 0x80 being a null char.
+            byte[] encoded = ByteCodecs.encode(out.toByteArray());
+            StringBuilder sb = new StringBuilder(encoded.length);
+            for (int i = 0; i < encoded.length; i++) {
+                if ((encoded[i] & 0xFF) == 0xC0 && i + 1 < encoded.length && (encoded[i + 1] & 0xFF) == 0x80) {
+                    sb.append('\0');
+                    i++;
+                } else {
+                    sb.append((char) encoded[i]);
+                }
+            }
+            return sb.toString();
+        }
+
+        private static void writeNat(ByteArrayOutputStream out, int nat) {
+            int groups = 1;
+            while ((nat >>> (7 * groups)) != 0 && groups < 5) {
+                groups++;
+            }
+            for (int i = groups - 1; i >= 0; i--) {
+                int b = (nat >>> (7 * i)) & 0x7F;
+                out.write(i != 0 ? b | 0x80 : b);
+            }
+        }
+    }
+}
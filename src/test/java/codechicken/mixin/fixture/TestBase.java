@@ -0,0 +1,26 @@
+package codechicken.mixin.fixture;
+
+/**
+ * The base class test traits are mixed onto.
+ */
+public class TestBase implements Tickable {
+
+    public int ticks;
+
+    @Override
+    public void tick() {
+        ticks++;
+    }
+
+    public int value() {
+        return 1;
+    }
+
+    public Object self() {
+        return this;
+    }
+
+    public boolean isSame(Tickable other) {
+        return other == this;
+    }
+}
@@ -0,0 +1,6 @@
+package codechicken.mixin.fixture;
+
+public interface TestFactory {
+
+    TestBase create();
+}
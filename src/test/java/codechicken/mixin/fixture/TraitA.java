@@ -0,0 +1,26 @@
+package codechicken.mixin.fixture;
+
+public class TraitA extends TestBase {
+
+    private int a;
+
+    @Override
+    public void tick() {
+        super.tick();
+        a++;
+    }
+
+    @Override
+    public int value() {
+        return super.value() + 10;
+    }
+
+    public int getA() {
+        return a;
+    }
+
+    // Passes 'this' as a parent type of the base, the trait generator must cast it.
+    public boolean isSelf() {
+        return isSame(this);
+    }
+}
@@ -0,0 +1,32 @@
+package codechicken.mixin.fixture;
+
+public class TraitB extends TestBase {
+
+    private long b = 5;
+    private double scale = 0.5D;
+
+    @Override
+    public void tick() {
+        super.tick();
+        b += 2;
+    }
+
+    @Override
+    public int value() {
+        return super.value() * 2;
+    }
+
+    // Covariant override, the composite needs a bridge for Object self().
+    @Override
+    public TestBase self() {
+        return new TestBase();
+    }
+
+    public long getB() {
+        return b;
+    }
+
+    public double scaled(long factor, double offset) {
+        return b * factor * scale + offset;
+    }
+}
@@ -0,0 +1,9 @@
+package codechicken.mixin.fixture;
+
+public class TraitC extends TestBase {
+
+    @Override
+    public int value() {
+        return super.value() + 100;
+    }
+}
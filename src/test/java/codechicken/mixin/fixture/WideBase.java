@@ -0,0 +1,21 @@
+package codechicken.mixin.fixture;
+
+/**
+ * A base class with wide constructor arguments.
+ */
+public class WideBase {
+
+    public final long l;
+    public final double d;
+    public final int i;
+
+    public WideBase(long l, double d, int i) {
+        this.l = l;
+        this.d = d;
+        this.i = i;
+    }
+
+    public double sum() {
+        return l + d + i;
+    }
+}
@@ -0,0 +1,6 @@
+package codechicken.mixin.fixture;
+
+public interface WideFactory {
+
+    WideBase create(long l, double d, int i);
+}
@@ -0,0 +1,20 @@
+package codechicken.mixin.fixture;
+
+public class WideTrait extends WideBase {
+
+    private double total;
+
+    public WideTrait(long l, double d, int i) {
+        super(l, d, i);
+        total = l * d + i;
+    }
+
+    @Override
+    public double sum() {
+        return super.sum() + total;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+}
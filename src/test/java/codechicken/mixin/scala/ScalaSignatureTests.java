@@ -0,0 +1,107 @@
+package codechicken.mixin.scala;
+
+import codechicken.mixin.fixture.ScalaSignatureFixtures;
+import codechicken.mixin.scala.ScalaSignature.ClassSymbol;
+import codechicken.mixin.scala.ScalaSignature.MethodSymbol;
+import codechicken.mixin.scala.ScalaSignature.ObjectSymbol;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ScalaSignatureTests {
+
+    private static final String NAME = "codechicken.mixin.fixture.SigTrait";
+
+    @Test
+    public void testParse() {
+        ScalaSignature sig = new ScalaSignature(ScalaSignatureFixtures.generateSignature("SigTrait", 3));
+        Assertions.assertEquals(5, sig.major);
+        Assertions.assertEquals(0, sig.minor);
+
+        // The module class sharing the name is skipped.
+        ClassSymbol clazz = sig.findClass(NAME);
+        Assertions.assertNotNull(clazz);
+        Assertions.assertTrue(clazz.isTrait());
+        Assertions.assertFalse(clazz.isModule());
+        Assertions.assertEquals("java/lang/Object", clazz.jParent());
+        Assertions.assertEquals(List.of(), clazz.jInterfaces());
+
+        ObjectSymbol object = sig.findObject(NAME);
+        Assertions.assertNotNull(object);
+        Assertions.assertTrue(object.isObject());
+        Assertions.assertEquals("java/lang/Object", object.jParent());
+
+        List<String> methods = new ArrayList<>();
+        for (MethodSymbol sym : sig.<MethodSymbol>collect(8)) {
+            if (sym.isMethod() && sym.owner() == clazz) {
+                methods.add(sym.name() + sym.jDesc());
+            }
+        }
+        Assertions.assertEquals(List.of("method0(I)I", "method1(I)I", "method2(I)I"), methods);
+    }
+
+    @Test
+    public void testMissing() {
+        ScalaSignature sig = new ScalaSignature(ScalaSignatureFixtures.generateSignature("SigTrait", 1));
+        Assertions.assertNull(sig.findClass("codechicken.mixin.fixture.Missing"));
+        Assertions.assertNull(sig.findObject("codechicken.mixin.fixture.Missing"));
+        // Only a class by that name, not an object.
+        Assertions.assertNull(sig.findObject("codechicken.mixin.fixture"));
+        Assertions.assertEquals(0, sig.collect(44).size());
+    }
+
+    @Test
+    public void testMemoized() {
+        ScalaSignature sig = new ScalaSignature(ScalaSignatureFixtures.generateSignature("SigTrait", 2));
+        for (int i = 0; i < sig.table.length; i++) {
+            Assertions.assertSame(sig.eval(i), sig.eval(i), "Entry " + i);
+        }
+        Assertions.assertSame(sig.findClass(NAME), sig.findClass(NAME));
+        Assertions.assertSame(sig.findObject(NAME), sig.findObject(NAME));
+        Assertions.assertSame(sig.findClass(NAME).info(), sig.findClass(NAME).info());
+        Assertions.assertEquals(sig.collect(8), sig.collect(8));
+    }
+
+    @Test
+    public void testLargeSignature() {
+        // Enough entries for multi-byte nats, and encoded zeros.
+        int count = 500;
+        ScalaSignature sig = new ScalaSignature(ScalaSignatureFixtures.generateSignature("SigTrait", count));
+        ClassSymbol clazz = sig.findClass(NAME);
+        Assertions.assertNotNull(clazz);
+
+        List<MethodSymbol> methods = new ArrayList<>();
+        for (MethodSymbol sym : sig.<MethodSymbol>collect(8)) {
+            if (sym.isMethod() && sym.owner() == clazz) {
+                methods.add(sym);
+            }
+        }
+        Assertions.assertEquals(count, methods.size());
+        Assertions.assertEquals("method" + (count - 1), methods.get(count - 1).name());
+        Assertions.assertEquals("(I)I", methods.get(count - 1).jDesc());
+    }
+
+    @Test
+    public void testTruncated() {
+        String sig = ScalaSignatureFixtures.generateSignature("SigTrait", 3);
+        // The last entry now ends past the decoded bytes, but not past the undecoded ones.
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ScalaSignature(sig.substring(0, sig.length() - 2)));
+    }
+
+    @Test
+    public void testParseClassNode() {
+        ClassNode cNode = new ClassNode();
+        Assertions.assertNull(ScalaSignature.parse(cNode));
+
+        AnnotationNode ann = new AnnotationNode("Lscala/reflect/ScalaSignature;");
+        ann.values = List.of("bytes", ScalaSignatureFixtures.generateSignature("SigTrait", 1));
+        cNode.visibleAnnotations = new ArrayList<>(List.of(new AnnotationNode("Ljava/lang/Deprecated;"), ann));
+        ScalaSignature sig = ScalaSignature.parse(cNode);
+        Assertions.assertNotNull(sig);
+        Assertions.assertNotNull(sig.findClass(NAME));
+    }
+}
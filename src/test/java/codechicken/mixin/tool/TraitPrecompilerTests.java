@@ -0,0 +1,53 @@
+package codechicken.mixin.tool;
+
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.fixture.TraitA;
+import codechicken.mixin.fixture.TraitB;
+import codechicken.mixin.util.PrebuiltTrait;
+import codechicken.mixin.util.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class TraitPrecompilerTests {
+
+    @Test
+    public void testPrecompile(@TempDir Path dir) throws IOException {
+        Path output = dir.resolve("libs/traits.jar");
+        TraitPrecompiler precompiler = new TraitPrecompiler(MixinCompiler.create());
+        precompiler.precompile(List.of(TraitA.class.getName(), TraitB.class.getName()), output);
+
+        // The jar has exactly what each trait writes.
+        MixinCompiler compiler = MixinCompiler.create();
+        Map<String, byte[]> expected = new HashMap<>();
+        for (Class<?> trait : List.of(TraitA.class, TraitB.class)) {
+            PrebuiltTrait.build(compiler, compiler.getClassNode(Utils.asmName(trait))).write(expected::put);
+        }
+        Assertions.assertTrue(expected.containsKey(PrebuiltTrait.PREFIX + Utils.asmName(TraitA.class) + ".mixin"));
+
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipFile zip = new ZipFile(output.toFile())) {
+            for (ZipEntry entry : zip.stream().toList()) {
+                entries.put(entry.getName(), zip.getInputStream(entry).readAllBytes());
+            }
+        }
+        Assertions.assertEquals(expected.keySet(), entries.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assertions.assertArrayEquals(entry.getValue(), entries.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    @Test
+    public void testMissingTrait() {
+        TraitPrecompiler precompiler = new TraitPrecompiler(MixinCompiler.create());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> precompiler.precompile("codechicken/mixin/fixture/Missing"));
+    }
+}
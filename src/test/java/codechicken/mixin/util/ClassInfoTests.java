@@ -0,0 +1,187 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.api.MixinBackend;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinDebugger;
+import codechicken.mixin.api.MixinLanguageSupport;
+import codechicken.mixin.fixture.TestBase;
+import codechicken.mixin.fixture.Tickable;
+import codechicken.mixin.fixture.TraitA;
+import codechicken.mixin.fixture.TraitB;
+import codechicken.mixin.fixture.TraitC;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+public class ClassInfoTests {
+
+    @Test
+    public void testFindPublicImpl() {
+        MixinCompiler compiler = MixinCompiler.create();
+        ClassInfo traitB = compiler.getClassInfo(TraitB.class);
+        ClassInfo base = compiler.getClassInfo(TestBase.class);
+        ClassInfo tickable = compiler.getClassInfo(Tickable.class);
+
+        Assertions.assertSame(traitB, impl(traitB, "tick", "()V").getOwner());
+        Assertions.assertSame(base, impl(traitB, "isSame", "(Lcodechicken/mixin/fixture/Tickable;)Z").getOwner());
+        Assertions.assertSame(base, traitB.findPublicParentImpl("tick", "()V").getOwner());
+        Assertions.assertNull(traitB.findPublicImpl("missing", "()V"));
+        // Abstract methods are not implementations.
+        Assertions.assertNull(tickable.findPublicImpl("tick", "()V"));
+        // Memoized.
+        Assertions.assertSame(impl(traitB, "value", "()I"), impl(traitB, "value", "()I"));
+
+        // Same result as a walk over every method, first match wins.
+        for (MethodInfo m : traitB.getAllMethods()) {
+            Assertions.assertSame(walkImpl(traitB, m.getName(), m.getDesc()), traitB.findPublicImpl(m.getName(), m.getDesc()), m.getName() + m.getDesc());
+        }
+    }
+
+    @Test
+    public void testFindHierarchyMethods() {
+        MixinCompiler compiler = MixinCompiler.create();
+        ClassInfo traitB = compiler.getClassInfo(TraitB.class);
+        ClassInfo base = compiler.getClassInfo(TestBase.class);
+
+        // Matched by name and parameters, every return type, from the class and its parents.
+        List<MethodInfo> self = traitB.findHierarchyMethods("self", "()");
+        Assertions.assertEquals(
+                Set.of("codechicken/mixin/fixture/TraitB.self()Lcodechicken/mixin/fixture/TestBase;",
+                        "codechicken/mixin/fixture/TraitB.self()Ljava/lang/Object;",
+                        "codechicken/mixin/fixture/TestBase.self()Ljava/lang/Object;"),
+                self.stream().map(e -> e.getOwner().getName() + "." + e.getName() + e.getDesc()).collect(Collectors.toSet())
+        );
+        Assertions.assertEquals(3, self.size());
+        // Only each class's own methods are indexed, and memoized.
+        Assertions.assertEquals(2, traitB.findDeclaredMethods("self", "()").size());
+        Assertions.assertSame(traitB.findDeclaredMethods("self", "()"), traitB.findDeclaredMethods("self", "()"));
+        Assertions.assertTrue(traitB.findDeclaredMethods("self", "()").stream().allMatch(e -> e.getOwner() == traitB));
+
+        // Interfaces are included, parameters must match exactly.
+        Assertions.assertEquals(List.of("codechicken/mixin/fixture/TestBase", "codechicken/mixin/fixture/Tickable"),
+                base.findHierarchyMethods("tick", "()").stream().map(e -> e.getOwner().getName()).toList());
+        Assertions.assertEquals(1, traitB.findHierarchyMethods("scaled", "(JD)").size());
+        Assertions.assertEquals(List.of(), traitB.findHierarchyMethods("scaled", "(J)"));
+        Assertions.assertEquals(List.of(), traitB.findHierarchyMethods("missing", "()"));
+    }
+
+    @Test
+    public void testConcurrentGetClassInfo() throws InterruptedException {
+        List<String> names = List.of(
+                Utils.asmName(TraitA.class),
+                Utils.asmName(TraitB.class),
+                Utils.asmName(TraitC.class),
+                Utils.asmName(TestBase.class),
+                Utils.asmName(Tickable.class),
+                "codechicken/mixin/fixture/Missing"
+        );
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 10; round++) {
+                MixinCompiler compiler = MixinCompiler.create();
+                CountDownLatch start = new CountDownLatch(1);
+                List<CompletableFuture<List<ClassInfo>>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    int offset = i;
+                    futures.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                        // Each thread starts at a different class, so they race on each other's parents.
+                        ClassInfo[] infos = new ClassInfo[names.size()];
+                        for (int j = 0; j < names.size(); j++) {
+                            int idx = (j + offset) % names.size();
+                            infos[idx] = compiler.getClassInfo(names.get(idx));
+                        }
+                        return Arrays.asList(infos);
+                    }, executor));
+                }
+                start.countDown();
+
+                List<ClassInfo> expected = futures.get(0).join();
+                for (CompletableFuture<List<ClassInfo>> future : futures) {
+                    List<ClassInfo> infos = future.join();
+                    for (int j = 0; j < names.size(); j++) {
+                        Assertions.assertSame(expected.get(j), infos.get(j), names.get(j));
+                    }
+                }
+                // Missing classes resolve to null, parents are the same instances.
+                Assertions.assertNull(expected.get(5));
+                Assertions.assertSame(expected.get(3), expected.get(1).getSuperClass());
+                Assertions.assertSame(expected.get(4), expected.get(3).getInterfaces().iterator().next());
+                Assertions.assertSame(expected.get(1), compiler.getClassInfo(TraitB.class));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDefaultObtainInfoGetsFullNode() {
+        MixinCompiler compiler = MixinCompiler.create(
+                new MixinBackend.SimpleMixinBackend(),
+                new MixinDebugger.NullDebugger(),
+                List.of(NodeOnlyLanguageSupport.class, MixinLanguageSupport.JavaMixinLanguageSupport.class)
+        );
+        NodeOnlyLanguageSupport support = compiler.getLanguageSupport("node_only");
+        Assertions.assertNotNull(compiler.getClassInfo(TraitB.class));
+
+        // Supports only implementing obtainInfo(ClassNode) still get a full, unshared ClassNode.
+        ClassNode cNode = support.nodes.stream()
+                .filter(e -> e.name.equals(Utils.asmName(TraitB.class)))
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertNotSame(cNode, compiler.getStructuralClassNode(cNode.name));
+        for (MethodNode mNode : cNode.methods) {
+            Assertions.assertNotEquals(0, mNode.instructions.size(), mNode.name);
+        }
+    }
+
+    private static MethodInfo impl(ClassInfo info, String name, String desc) {
+        MethodInfo method = info.findPublicImpl(name, desc);
+        Assertions.assertNotNull(method, name + desc);
+        return method;
+    }
+
+    private static @Nullable MethodInfo walkImpl(ClassInfo info, String name, String desc) {
+        for (MethodInfo m : info.getAllMethods()) {
+            if (!m.isAbstract() && !m.isPrivate() && m.getName().equals(name) && m.getDesc().equals(desc)) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    @MixinLanguageSupport.LanguageName ("node_only")
+    @MixinLanguageSupport.SortingIndex (0)
+    public static class NodeOnlyLanguageSupport implements MixinLanguageSupport {
+
+        private final List<ClassNode> nodes = new ArrayList<>();
+
+        @Override
+        public @Nullable ClassInfo obtainInfo(ClassNode cNode) {
+            nodes.add(cNode);
+            return null;
+        }
+
+        @Override
+        public @Nullable MixinInfo buildMixinTrait(ClassNode cNode) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package codechicken.mixin.util;
 
+import codechicken.mixin.api.MixinBackend;
 import codechicken.mixin.api.MixinCompiler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by covers1624 on 3/2/21.
  */
@@ -80,6 +84,40 @@ public class FactoryGeneratorTests {
         Assertions.assertEquals("World", thing.str2);
     }
 
+    @Test
+    public void testHiddenClassFactory() {
+        MixinCompiler compiler = MixinCompiler.create();
+        FactoryGenerator generator = new FactoryGenerator(compiler);
+        generator.setStrategy(FactoryGenerator.Strategy.HIDDEN_CLASS);
+        MixedParamFactory factory = generator.generateFactory(ThingToMake.class, MixedParamFactory.class);
+        ThingToMake thing = factory.construct("Hello", 69420, 69.420D, "World");
+
+        Assertions.assertTrue(factory.getClass().isHidden());
+        Assertions.assertEquals("Hello", thing.str);
+        Assertions.assertEquals(69420, thing.i);
+        Assertions.assertEquals(69.420D, thing.d);
+        Assertions.assertEquals("World", thing.str2);
+
+        // Second factory in the same package reuses the lookup anchor.
+        VoidFactory voidFactory = generator.generateFactory(ThingToMake.class, VoidFactory.class);
+        Assertions.assertNotNull(voidFactory.construct());
+    }
+
+    @Test
+    public void testFactoryMaxsVerify() {
+        List<byte[]> defined = new ArrayList<>();
+        MixinCompiler compiler = MixinCompiler.create(new MixinBackend.SimpleMixinBackend(), (name, bytes) -> defined.add(bytes));
+        FactoryGenerator generator = new FactoryGenerator(compiler);
+        generator.generateFactory(ThingToMake.class, VoidFactory.class);
+        generator.generateFactory(ThingToMake.class, WidePrimitiveParamFactory.class);
+        generator.generateFactory(ThingToMake.class, MixedParamFactory.class);
+
+        Assertions.assertEquals(3, defined.size());
+        for (byte[] bytes : defined) {
+            Utils.verifyClass(bytes, ThingToMake.class.getClassLoader());
+        }
+    }
+
     public interface MixedParamFactory {
 
         ThingToMake construct(String str, int i, double d, String str2);
@@ -0,0 +1,154 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.MixinCompilerImpl;
+import codechicken.mixin.MixinFactoryImpl;
+import codechicken.mixin.api.MixinMetrics.Counter;
+import codechicken.mixin.fixture.TestBase;
+import codechicken.mixin.fixture.TestFactory;
+import codechicken.mixin.fixture.TraitA;
+import codechicken.mixin.fixture.TraitB;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+public class MixinClassCacheTests {
+
+    private static final String BASE = Utils.asmName(TestBase.class);
+    private static final Set<String> TRAITS = new LinkedHashSet<>(List.of(Utils.asmName(TraitA.class), Utils.asmName(TraitB.class)));
+
+    @Test
+    public void testMissThenHit(@TempDir Path dir) throws IOException {
+        MixinClassCache cache = new MixinClassCache(dir);
+        byte[] bytes = classBytes(TestBase.class);
+
+        Assertions.assertNull(cache.get("key"));
+        cache.put("key", bytes);
+        Assertions.assertArrayEquals(bytes, cache.get("key"));
+        Assertions.assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void testCorruptAndTruncated(@TempDir Path dir) throws IOException {
+        MixinClassCache cache = new MixinClassCache(dir);
+        byte[] bytes = classBytes(TestBase.class);
+
+        Files.write(dir.resolve("corrupt.class"), new byte[] { 1, 2, 3, 4, 5, 6 });
+        Files.write(dir.resolve("truncated.class"), Arrays.copyOf(bytes, bytes.length - 8));
+        Files.write(dir.resolve("empty.class"), new byte[0]);
+
+        Assertions.assertNull(cache.get("corrupt"));
+        Assertions.assertNull(cache.get("truncated"));
+        Assertions.assertNull(cache.get("empty"));
+
+        // Corrupt entries are replaced by the next put.
+        cache.put("truncated", bytes);
+        Assertions.assertArrayEquals(bytes, cache.get("truncated"));
+    }
+
+    @Test
+    public void testConcurrentWrites(@TempDir Path dir) throws IOException {
+        MixinClassCache cache = new MixinClassCache(dir);
+        byte[] bytes = classBytes(TestBase.class);
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            writes.add(CompletableFuture.runAsync(() -> cache.put("key", bytes)));
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+
+        Assertions.assertArrayEquals(bytes, cache.get("key"));
+        try (Stream<Path> files = Files.list(dir)) {
+            // Temp files are always moved or deleted.
+            Assertions.assertEquals(List.of(dir.resolve("key.class")), files.toList());
+        }
+    }
+
+    @Test
+    public void testHitWithDifferentName(@TempDir Path dir) throws ReflectiveOperationException {
+        SimpleMetrics metrics = new SimpleMetrics();
+        MixinCompilerImpl first = newCompiler(dir, metrics);
+        byte[] generated = first.generateMixinClass("codechicken/mixin/fixture/Cached$$0", BASE, TRAITS);
+        Assertions.assertEquals(1, metrics.getCount(Counter.CLASS_CACHE_MISS));
+
+        // A new compiler, as after a restart, which compiles the same traits under a different name.
+        MixinCompilerImpl second = newCompiler(dir, metrics);
+        byte[] cached = second.generateMixinClass("codechicken/mixin/fixture/Cached$$7", BASE, TRAITS);
+        Assertions.assertEquals(1, metrics.getCount(Counter.CLASS_CACHE_HIT));
+        Assertions.assertEquals("codechicken/mixin/fixture/Cached$$7", new ClassReader(cached).getClassName());
+        Assertions.assertEquals(generated.length, cached.length);
+        Utils.verifyClass(cached, TestBase.class.getClassLoader());
+
+        Class<? extends TestBase> clazz = second.defineClass("codechicken/mixin/fixture/Cached$$7", cached);
+        TestBase obj = clazz.getConstructor().newInstance();
+        obj.tick();
+        Assertions.assertEquals(1, obj.ticks);
+        Assertions.assertEquals(22, obj.value());
+    }
+
+    @Test
+    public void testMissWithModifiedTrait(@TempDir Path dir) {
+        SimpleMetrics metrics = new SimpleMetrics();
+        MixinCompilerImpl first = newCompiler(dir, metrics);
+        first.generateMixinClass("codechicken/mixin/fixture/Cached$$0", BASE, TRAITS);
+
+        // Registered from a transformed ClassNode, the bytes cached for the original class don't apply.
+        MixinCompilerImpl second = new MixinCompilerImpl();
+        second.setMetrics(metrics);
+        second.setMixinClassCache(new MixinClassCache(dir));
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(second, TestBase.class, TestFactory.class, "cache");
+        ClassNode cNode = second.getClassNode(Utils.asmName(TraitA.class));
+        cNode.fields.add(new FieldNode(Opcodes.ACC_PRIVATE, "extra", "I", null, null));
+        factory.registerTrait(cNode);
+        factory.registerTrait(TraitB.class);
+        second.generateMixinClass("codechicken/mixin/fixture/Cached$$1", BASE, TRAITS);
+        Assertions.assertEquals(0, metrics.getCount(Counter.CLASS_CACHE_HIT));
+        Assertions.assertEquals(2, metrics.getCount(Counter.CLASS_CACHE_MISS));
+    }
+
+    @Test
+    public void testTraitsRegisteredWithoutCache(@TempDir Path dir) {
+        SimpleMetrics metrics = new SimpleMetrics();
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        compiler.setMetrics(metrics);
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "cache");
+        factory.registerTrait(TraitA.class);
+        factory.registerTrait(TraitB.class);
+
+        // Nothing was hashed when the traits were registered, so nothing is cached.
+        MixinClassCache cache = new MixinClassCache(dir);
+        compiler.setMixinClassCache(cache);
+        compiler.generateMixinClass("codechicken/mixin/fixture/Cached$$0", BASE, TRAITS);
+        Assertions.assertEquals(0, metrics.getCount(Counter.CLASS_CACHE_HIT) + metrics.getCount(Counter.CLASS_CACHE_MISS));
+    }
+
+    private static MixinCompilerImpl newCompiler(Path dir, SimpleMetrics metrics) {
+        MixinCompilerImpl compiler = new MixinCompilerImpl();
+        compiler.setMetrics(metrics);
+        compiler.setMixinClassCache(new MixinClassCache(dir));
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "cache");
+        factory.registerTrait(TraitA.class);
+        factory.registerTrait(TraitB.class);
+        return compiler;
+    }
+
+    private static byte[] classBytes(Class<?> clazz) {
+        byte[] bytes = new MixinCompilerImpl().getClassBytes(Utils.asmName(clazz));
+        Assertions.assertNotNull(bytes);
+        return bytes;
+    }
+}
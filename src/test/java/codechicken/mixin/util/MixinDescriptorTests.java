@@ -0,0 +1,109 @@
+package codechicken.mixin.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+
+public class MixinDescriptorTests {
+
+    @Test
+    public void testRoundTrip() {
+        MixinInfo parent = new MixinInfo("a/Parent", "a/Base", List.of(), List.of(), List.of(), List.of());
+        MixinInfo info = new MixinInfo(
+                "a/Trait",
+                "a/Base",
+                List.of(parent),
+                List.of(new FieldMixin("value", "I", ACC_PRIVATE)),
+                List.of(
+                        new MethodMixin("tick", "()V", ACC_PUBLIC, List.of()),
+                        new MethodMixin("read", "(Ljava/lang/String;)I", ACC_PUBLIC, List.of("java/io/IOException"))
+                ),
+                List.of("tick()V")
+        );
+
+        byte[] bytes = MixinDescriptor.encode(info);
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        MixinInfo decoded = MixinDescriptor.decode(buf, Map.of(parent.name(), parent)::get);
+
+        Assertions.assertEquals(info, decoded);
+        Assertions.assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void testMissingParent() {
+        MixinInfo parent = new MixinInfo("a/Parent", "a/Base", List.of(), List.of(), List.of(), List.of());
+        MixinInfo info = new MixinInfo("a/Trait", "a/Base", List.of(parent), List.of(), List.of(), List.of());
+
+        byte[] bytes = MixinDescriptor.encode(info);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MixinDescriptor.decode(ByteBuffer.wrap(bytes), e -> null));
+    }
+
+    @Test
+    public void testTruncated() {
+        MixinInfo info = new MixinInfo("a/Trait", "a/Base", List.of(), List.of(), List.of(), List.of("tick()V"));
+
+        byte[] bytes = MixinDescriptor.encode(info);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MixinDescriptor.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1), e -> null));
+    }
+
+    @Test
+    public void testManyMethodsAndExceptions() {
+        List<MethodMixin> methods = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            List<String> exceptions = new ArrayList<>();
+            for (int j = 0; j < i % 4; j++) {
+                exceptions.add("a/Exception" + j);
+            }
+            methods.add(new MethodMixin("method" + i, "(IJ)D", ACC_PUBLIC, exceptions));
+        }
+        MixinInfo info = new MixinInfo("a/Trait", "a/Base", List.of(), List.of(), methods, List.of());
+
+        MixinInfo decoded = MixinDescriptor.decode(ByteBuffer.wrap(MixinDescriptor.encode(info)), e -> null);
+        Assertions.assertEquals(info, decoded);
+        for (int i = 0; i < methods.size(); i++) {
+            Assertions.assertEquals(methods.get(i), decoded.methods().get(i));
+            Assertions.assertEquals(methods.get(i).hashCode(), decoded.methods().get(i).hashCode());
+        }
+    }
+
+    @Test
+    public void testMaxLength() {
+        String name = "a/" + "x".repeat(0xFFFF - 2);
+        MixinInfo info = new MixinInfo(name, "a/Base", List.of(), List.of(), List.of(), List.of());
+        Assertions.assertEquals(info, MixinDescriptor.decode(ByteBuffer.wrap(MixinDescriptor.encode(info)), e -> null));
+    }
+
+    @Test
+    public void testOverflow() {
+        // String too long, once encoded.
+        String longName = "a/" + "\u00e9".repeat(0x8000);
+        assertOverflow(new MixinInfo(longName, "a/Base", List.of(), List.of(), List.of(), List.of()));
+
+        // Too many methods, all sharing pooled strings.
+        MethodMixin method = new MethodMixin("tick", "()V", ACC_PUBLIC, List.of());
+        assertOverflow(new MixinInfo("a/Trait", "a/Base", List.of(), List.of(), Collections.nCopies(0x10000, method), List.of()));
+
+        // Too many exceptions.
+        MethodMixin throwing = new MethodMixin("tick", "()V", ACC_PUBLIC, Collections.nCopies(0x10000, "java/io/IOException"));
+        assertOverflow(new MixinInfo("a/Trait", "a/Base", List.of(), List.of(), List.of(throwing), List.of()));
+
+        // Too many fields, each with a unique name.
+        List<FieldMixin> fields = new ArrayList<>();
+        for (int i = 0; i < 0x10000; i++) {
+            fields.add(new FieldMixin("field" + i, "I", ACC_PRIVATE));
+        }
+        assertOverflow(new MixinInfo("a/Trait", "a/Base", List.of(), fields, List.of(), List.of()));
+    }
+
+    private static void assertOverflow(MixinInfo info) {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MixinDescriptor.encode(info));
+    }
+}
@@ -0,0 +1,149 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.MixinFactoryImpl;
+import codechicken.mixin.api.MixinBackend;
+import codechicken.mixin.api.MixinCompiler;
+import codechicken.mixin.api.MixinFactory.TraitKey;
+import codechicken.mixin.api.MixinLanguageSupport;
+import codechicken.mixin.fixture.TestBase;
+import codechicken.mixin.fixture.TestFactory;
+import codechicken.mixin.fixture.TraitB;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class PrebuiltTraitTests {
+
+    private static final String NAME = Utils.asmName(TraitB.class);
+    private static final String METADATA = PrebuiltTrait.PREFIX + NAME + ".mixin";
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Map<String, byte[]> resources = build();
+        // TraitB has no statics, so no static holder.
+        Assertions.assertEquals(Set.of(METADATA, PrebuiltTrait.PREFIX + NAME + ".class"), resources.keySet());
+
+        MixinCompiler built = MixinCompiler.create();
+        PrebuiltTrait expected = PrebuiltTrait.build(built, built.getClassNode(NAME));
+        PrebuiltTrait loaded = PrebuiltTrait.load(newCompiler(resources), NAME);
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals(expected.sourceHash(), loaded.sourceHash());
+        Assertions.assertEquals(expected.info(), loaded.info());
+        Assertions.assertArrayEquals(expected.traitBytes(), loaded.traitBytes());
+        Assertions.assertNull(loaded.staticBytes());
+    }
+
+    @Test
+    public void testRegisterPrebuilt() throws IOException {
+        Map<String, byte[]> resources = build();
+        // Mark the prebuilt trait interface, so we can tell it was used.
+        ClassNode tNode = new ClassNode();
+        new ClassReader(resources.get(PrebuiltTrait.PREFIX + NAME + ".class")).accept(tNode, 0);
+        tNode.interfaces.add("java/io/Serializable");
+        ClassWriter cw = new ClassWriter(0);
+        tNode.accept(cw);
+        resources.put(PrebuiltTrait.PREFIX + NAME + ".class", cw.toByteArray());
+
+        // Not used unless enabled.
+        MixinFactoryImpl<TestBase, TestFactory> defaultFactory = new MixinFactoryImpl<>(newCompiler(resources), TestBase.class, TestFactory.class, "prebuilt");
+        TestBase defaultObj = defaultFactory.construct(ImmutableSet.of(defaultFactory.registerTrait(TraitB.class))).create();
+        Assertions.assertEquals(2, defaultObj.value());
+        Assertions.assertEquals(PrebuiltTrait.ENABLED, defaultObj instanceof Serializable);
+
+        MixinCompiler compiler = newCompiler(resources);
+        compiler.<MixinLanguageSupport.JavaMixinLanguageSupport>getLanguageSupport("java").setUsePrebuilt(true);
+        MixinFactoryImpl<TestBase, TestFactory> factory = new MixinFactoryImpl<>(compiler, TestBase.class, TestFactory.class, "prebuilt");
+        TraitKey key = factory.registerTrait(TraitB.class);
+        TestBase obj = factory.construct(ImmutableSet.of(key)).create();
+        obj.tick();
+        Assertions.assertEquals(1, obj.ticks);
+        Assertions.assertEquals(2, obj.value());
+        Assertions.assertInstanceOf(Serializable.class, obj);
+
+        // Not used when disabled by a custom generator.
+        MixinCompiler custom = newCompiler(resources);
+        MixinLanguageSupport.JavaMixinLanguageSupport customSupport = custom.getLanguageSupport("java");
+        customSupport.setTraitGeneratorFactory(JavaTraitGenerator::new);
+        customSupport.setUsePrebuilt(true);
+        MixinFactoryImpl<TestBase, TestFactory> customFactory = new MixinFactoryImpl<>(custom, TestBase.class, TestFactory.class, "prebuilt");
+        TestBase customObj = customFactory.construct(ImmutableSet.of(customFactory.registerTrait(TraitB.class))).create();
+        Assertions.assertEquals(2, customObj.value());
+        Assertions.assertFalse(customObj instanceof Serializable);
+    }
+
+    @Test
+    public void testRejectTampered() throws IOException {
+        // Hash, after the magic, format version, generator version and hash length.
+        Map<String, byte[]> resources = build();
+        resources.get(METADATA)[14] ^= 1;
+        Assertions.assertNull(PrebuiltTrait.load(newCompiler(resources), NAME));
+
+        // Generator version.
+        resources = build();
+        ByteBuffer.wrap(resources.get(METADATA)).putInt(8, JavaTraitGenerator.VERSION + 1);
+        Assertions.assertNull(PrebuiltTrait.load(newCompiler(resources), NAME));
+
+        // Format version.
+        resources = build();
+        ByteBuffer.wrap(resources.get(METADATA)).putInt(4, 0);
+        Assertions.assertNull(PrebuiltTrait.load(newCompiler(resources), NAME));
+
+        // Truncated.
+        resources = build();
+        byte[] metadata = resources.get(METADATA);
+        resources.put(METADATA, Arrays.copyOf(metadata, metadata.length / 2));
+        Assertions.assertNull(PrebuiltTrait.load(newCompiler(resources), NAME));
+
+        // Incomplete.
+        resources = build();
+        resources.remove(PrebuiltTrait.PREFIX + NAME + ".class");
+        Assertions.assertNull(PrebuiltTrait.load(newCompiler(resources), NAME));
+
+        // Missing.
+        Assertions.assertNull(PrebuiltTrait.load(newCompiler(new HashMap<>()), NAME));
+    }
+
+    private static Map<String, byte[]> build() throws IOException {
+        MixinCompiler compiler = MixinCompiler.create();
+        Map<String, byte[]> resources = new HashMap<>();
+        PrebuiltTrait.build(compiler, compiler.getClassNode(NAME)).write(resources::put);
+        return resources;
+    }
+
+    private static MixinCompiler newCompiler(Map<String, byte[]> resources) {
+        return MixinCompiler.create(new MixinBackend.SimpleMixinBackend(new ResourceLoader(resources)));
+    }
+
+    private static class ResourceLoader extends ClassLoader {
+
+        private final Map<String, byte[]> resources;
+
+        ResourceLoader(Map<String, byte[]> resources) {
+            super(PrebuiltTraitTests.class.getClassLoader());
+            this.resources = resources;
+        }
+
+        @Override
+        public @Nullable InputStream getResourceAsStream(String name) {
+            byte[] bytes = resources.get(name);
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+            return super.getResourceAsStream(name);
+        }
+    }
+}
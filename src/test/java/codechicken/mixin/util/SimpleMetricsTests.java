@@ -0,0 +1,74 @@
+package codechicken.mixin.util;
+
+import codechicken.mixin.api.MixinMetrics.Counter;
+import codechicken.mixin.api.MixinMetrics.Timer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SimpleMetricsTests {
+
+    @Test
+    public void testBucketBoundaries() {
+        assertBucket(0, 0);
+        // Negative timings are clamped to 0.
+        assertBucket(-5, 0);
+        assertBucket(1, 1);
+        assertBucket(2, 2);
+        assertBucket(3, 2);
+        assertBucket(4, 3);
+        assertBucket(1023, 10);
+        assertBucket(1024, 11);
+        assertBucket(1L << 62, 63);
+        assertBucket(Long.MAX_VALUE, 63);
+    }
+
+    @Test
+    public void testSnapshot() {
+        SimpleMetrics metrics = new SimpleMetrics();
+        for (int i = 0; i < 99; i++) {
+            metrics.recordTime(Timer.CLASS_GENERATION, 100);
+        }
+        metrics.recordTime(Timer.CLASS_GENERATION, 5000);
+
+        SimpleMetrics.Snapshot snapshot = metrics.getSnapshot(Timer.CLASS_GENERATION);
+        Assertions.assertEquals(100, snapshot.count());
+        Assertions.assertEquals(99 * 100 + 5000, snapshot.totalNanos());
+        Assertions.assertEquals(5000, snapshot.maxNanos());
+        Assertions.assertEquals(149, snapshot.meanNanos());
+        // Upper bound of the bucket, 100 is in [64, 128).
+        Assertions.assertEquals(128, snapshot.percentileNanos(0.5));
+        Assertions.assertEquals(128, snapshot.percentileNanos(0.99));
+        // Capped at the max, 5000 is in [4096, 8192).
+        Assertions.assertEquals(5000, snapshot.percentileNanos(1));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        SimpleMetrics.Snapshot snapshot = new SimpleMetrics().getSnapshot(Timer.TRAIT_REGISTRATION);
+        Assertions.assertEquals(0, snapshot.count());
+        Assertions.assertEquals(0, snapshot.meanNanos());
+        Assertions.assertEquals(0, snapshot.percentileNanos(0.5));
+        Assertions.assertEquals(0, snapshot.percentileNanos(0.99));
+    }
+
+    @Test
+    public void testHitRatio() {
+        SimpleMetrics metrics = new SimpleMetrics();
+        Assertions.assertTrue(Double.isNaN(metrics.getHitRatio(Counter.CLASS_CACHE_HIT, Counter.CLASS_CACHE_MISS)));
+
+        metrics.increment(Counter.CLASS_CACHE_MISS);
+        Assertions.assertEquals(0, metrics.getHitRatio(Counter.CLASS_CACHE_HIT, Counter.CLASS_CACHE_MISS));
+
+        metrics.increment(Counter.CLASS_CACHE_HIT, 3);
+        Assertions.assertEquals(0.75, metrics.getHitRatio(Counter.CLASS_CACHE_HIT, Counter.CLASS_CACHE_MISS));
+    }
+
+    private static void assertBucket(long nanos, int bucket) {
+        SimpleMetrics metrics = new SimpleMetrics();
+        metrics.recordTime(Timer.TRAIT_REGISTRATION, nanos);
+        long[] buckets = metrics.getSnapshot(Timer.TRAIT_REGISTRATION).buckets();
+        for (int i = 0; i < buckets.length; i++) {
+            Assertions.assertEquals(i == bucket ? 1 : 0, buckets[i], "Bucket " + i + " for " + nanos + "ns");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package codechicken.mixin.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+public class UtilsTests {
+
+    private static final String IFACE = "codechicken/mixin/util/BridgeTarget";
+    private static final String IMPL = "codechicken/mixin/util/BridgeImpl";
+    private static final List<String> DESCS = List.of(
+            "()V",
+            "(I)I",
+            "(JI)J",
+            "(DJ)D",
+            "(Ljava/lang/Object;D)Ljava/lang/Object;"
+    );
+
+    @Test
+    public void testBridgesVerify() throws ReflectiveOperationException {
+        MixinInfo info = new MixinInfo(IFACE, "java/lang/Object", List.of(), List.of(), List.of(), List.of());
+        byte[] iface = writeTarget();
+        byte[] impl = writeImpl(info);
+
+        BridgeLoader loader = new BridgeLoader();
+        Class<?> ifaceClass = loader.define(IFACE, iface);
+        Class<?> implClass = loader.define(IMPL, impl);
+        Utils.verifyClass(iface, loader);
+        Utils.verifyClass(impl, loader);
+
+        Object obj = implClass.getConstructor().newInstance();
+        Object marker = new Object();
+        Assertions.assertTrue(ifaceClass.isInstance(obj));
+        Assertions.assertEquals(6, implClass.getMethod("s1", int.class).invoke(obj, 5));
+        Assertions.assertEquals(10L, implClass.getMethod("s2", long.class, int.class).invoke(obj, 7L, 3));
+        Assertions.assertEquals(3.5D, implClass.getMethod("s3", double.class, long.class).invoke(obj, 1.5D, 2L));
+        Assertions.assertSame(marker, implClass.getMethod("s4", Object.class, double.class).invoke(obj, marker, 1D));
+        // Virtual bridges call through to the static bridges.
+        Assertions.assertEquals(6, implClass.getMethod("v1", int.class).invoke(obj, 5));
+        Assertions.assertEquals(10L, implClass.getMethod("v2", long.class, int.class).invoke(obj, 7L, 3));
+        Assertions.assertEquals(3.5D, implClass.getMethod("v3", double.class, long.class).invoke(obj, 1.5D, 2L));
+        Assertions.assertSame(marker, implClass.getMethod("v4", Object.class, double.class).invoke(obj, marker, 1D));
+        implClass.getMethod("v0").invoke(obj);
+    }
+
+    // An interface with a static s<n>$ implementation for each descriptor, in the shape of a trait.
+    private static byte[] writeTarget() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V17, ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT, IFACE, null, "java/lang/Object", null);
+        for (int i = 0; i < DESCS.size(); i++) {
+            String desc = DESCS.get(i);
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "s" + i + "$", Utils.staticDesc(IFACE, desc), null, null);
+            Type[] args = Type.getArgumentTypes(desc);
+            Type ret = Type.getReturnType(desc);
+            switch (ret.getSort()) {
+                case Type.VOID -> mv.visitInsn(RETURN);
+                case Type.INT -> {
+                    mv.visitVarInsn(ILOAD, 1);
+                    mv.visitInsn(ICONST_1);
+                    mv.visitInsn(IADD);
+                    mv.visitInsn(IRETURN);
+                }
+                case Type.LONG -> {
+                    mv.visitVarInsn(LLOAD, 1);
+                    mv.visitVarInsn(ILOAD, 3);
+                    mv.visitInsn(I2L);
+                    mv.visitInsn(LADD);
+                    mv.visitInsn(LRETURN);
+                }
+                case Type.DOUBLE -> {
+                    mv.visitVarInsn(DLOAD, 1);
+                    mv.visitVarInsn(LLOAD, 3);
+                    mv.visitInsn(L2D);
+                    mv.visitInsn(DADD);
+                    mv.visitInsn(DRETURN);
+                }
+                default -> {
+                    Assertions.assertEquals(Type.getObjectType("java/lang/Object"), args[0]);
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitInsn(ARETURN);
+                }
+            }
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // A class with explicit maxs, s<n> statically bridges to the interface, v<n> virtually bridges to s<n>.
+    private static byte[] writeImpl(MixinInfo info) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V17, ACC_PUBLIC | ACC_SUPER, IMPL, null, "java/lang/Object", new String[] { IFACE });
+
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        Utils.writeBridge(init, "()V", INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitEnd();
+
+        for (int i = 0; i < DESCS.size(); i++) {
+            String desc = DESCS.get(i);
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "s" + i, desc, null, null);
+            Utils.writeStaticBridge(mv, desc, "s" + i, info);
+            mv.visitEnd();
+
+            mv = cw.visitMethod(ACC_PUBLIC, "v" + i, desc, null, null);
+            Utils.writeBridge(mv, desc, INVOKEVIRTUAL, IMPL, "s" + i, desc, false);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static class BridgeLoader extends ClassLoader {
+
+        BridgeLoader() {
+            super(UtilsTests.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name.replace('/', '.'), bytes, 0, bytes.length);
+        }
+    }
+}